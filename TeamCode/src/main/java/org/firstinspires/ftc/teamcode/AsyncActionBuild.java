@@ -0,0 +1,127 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Action;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Handle to an action being built on a background worker, so complex trajectories can compile
+ * while the init loop keeps running (e.g., for vision). Typical use:
+ * <pre>
+ * AsyncActionBuild toBasket = AsyncActionBuild.submit("to basket",
+ *         () -> drive.actionBuilder(beginPose).splineTo(...).build());
+ * while (opModeInInit()) { ... }
+ * Actions.runBlocking(toBasket.get());
+ * </pre>
+ * The workers are daemon threads that exit after a few idle seconds.
+ */
+public final class AsyncActionBuild {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final ThreadPoolExecutor executor;
+    static {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        executor = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "AsyncActionBuild-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private final String name;
+    private final Future<Action> future;
+
+    private volatile long buildNanos = -1;
+
+    private AsyncActionBuild(String name, Supplier<Action> build) {
+        this.name = name;
+        this.future = executor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                return build.get();
+            } finally {
+                buildNanos = System.nanoTime() - start;
+            }
+        });
+    }
+
+    /**
+     * Starts building an action on a background worker.
+     * @param name label used when reporting the build time
+     */
+    public static AsyncActionBuild submit(String name, Supplier<Action> build) {
+        return new AsyncActionBuild(name, build);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * @return time spent building in nanoseconds, or -1 if the build hasn't finished
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * Waits for the build to finish and returns the action. Build failures are rethrown.
+     */
+    public Action get() throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("failed to build " + name, e.getCause());
+        }
+    }
+
+    /**
+     * Like {@link #get()}, but gives up after the timeout.
+     * @return the action, or null on timeout
+     */
+    public Action get(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            return future.get(timeout, unit);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("failed to build " + name, e.getCause());
+        } catch (TimeoutException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Waits for every build to finish, e.g., right after waitForStart().
+     */
+    public static void awaitAll(AsyncActionBuild... builds) throws InterruptedException {
+        for (AsyncActionBuild build : builds) {
+            build.get();
+        }
+    }
+
+    /**
+     * Cancels the build if it hasn't started yet.
+     */
+    public void cancel() {
+        future.cancel(false);
+    }
+
+    @Override
+    public String toString() {
+        long nanos = buildNanos;
+        return name + ": " + (nanos < 0 ? "building" : String.format("%.1f ms", nanos / 1e6));
+    }
+}
@@ -0,0 +1,143 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.ftc.Encoder;
+import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.robotcore.hardware.DcMotorController;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+import java.util.List;
+
+/**
+ * Puts the hubs in MANUAL bulk caching mode and clears the cache once at the top of each control
+ * cycle, so a cycle costs exactly one bulk read per hub no matter how many times the encoders are
+ * read. Encoders wrapped with {@link #track(Encoder)} report reads that happen twice in one cycle or
+ * after the read phase has ended.
+ * <p>
+ * MANUAL mode applies to every hub, so every motor encoder and analog or digital input on them
+ * only changes when the cache is refreshed. The drives refresh it in updatePoseEstimate(); a loop
+ * that reads other hardware without updating the pose (e.g., a TeleOp that only sets drive powers,
+ * or a lift or arm loop) must call {@link #beginCycle()} once per loop, or it reads frozen values.
+ */
+public final class BulkReadManager {
+    private final LynxModule[] modules;
+    private final Object refreshLock = new Object();
+
+    private long cycle;
+    private boolean readPhase;
+
+    private long duplicateReads, outOfPhaseReads;
+    private volatile long backgroundRefreshes;
+
+    public BulkReadManager(List<LynxModule> modules) {
+        this.modules = modules.toArray(new LynxModule[0]);
+
+        for (LynxModule module : this.modules) {
+            module.setBulkCachingMode(LynxModule.BulkCachingMode.MANUAL);
+        }
+    }
+
+    /**
+     * Refreshes the bulk cache on every hub and opens the read phase. The bulk reads are issued
+     * here rather than on the first encoder read so the cost of the read phase is easy to measure.
+     * Call it once at the top of every loop that doesn't call the drive's updatePoseEstimate().
+     */
+    public void beginCycle() {
+        synchronized (refreshLock) {
+            for (LynxModule module : modules) {
+                // clears the cache and refills it with a single bulk read
+                module.getBulkData();
+            }
+        }
+
+        cycle++;
+        readPhase = true;
+    }
+
+    /**
+     * Refreshes the bulk cache on every hub from a background thread, e.g., a localizer integrating
+     * on its own thread. Refreshes don't overlap the ones in {@link #beginCycle()}, but one can land
+     * in the middle of a read phase, so reads later in that cycle see newer data.
+     */
+    public void refresh() {
+        synchronized (refreshLock) {
+            for (LynxModule module : modules) {
+                module.getBulkData();
+            }
+        }
+        backgroundRefreshes++;
+    }
+
+    /**
+     * Closes the read phase. Encoder reads after this point still hit the cache, but they are
+     * counted as out of phase since they see data from the start of the cycle.
+     */
+    public void endReadPhase() {
+        readPhase = false;
+    }
+
+    public Encoder track(Encoder encoder) {
+        return new TrackedEncoder(encoder);
+    }
+
+    public long getCycles() {
+        return cycle;
+    }
+
+    /**
+     * @return the number of tracked encoder reads that repeated an earlier read in the same cycle
+     */
+    public long getDuplicateReads() {
+        return duplicateReads;
+    }
+
+    /**
+     * @return the number of {@link #refresh()} calls
+     */
+    public long getBackgroundRefreshes() {
+        return backgroundRefreshes;
+    }
+
+    /**
+     * @return the number of tracked encoder reads outside of a read phase
+     */
+    public long getOutOfPhaseReads() {
+        return outOfPhaseReads;
+    }
+
+    private final class TrackedEncoder implements Encoder {
+        private final Encoder encoder;
+        private long lastReadCycle = -1;
+
+        TrackedEncoder(Encoder encoder) {
+            this.encoder = encoder;
+        }
+
+        @Override
+        public PositionVelocityPair getPositionAndVelocity() {
+            if (!readPhase) {
+                outOfPhaseReads++;
+            } else if (lastReadCycle == cycle) {
+                duplicateReads++;
+            }
+            lastReadCycle = cycle;
+
+            return encoder.getPositionAndVelocity();
+        }
+
+        @Override
+        public DcMotorController getController() {
+            return encoder.getController();
+        }
+
+        @Override
+        public DcMotorSimple.Direction getDirection() {
+            return encoder.getDirection();
+        }
+
+        @Override
+        public void setDirection(DcMotorSimple.Direction direction) {
+            encoder.setDirection(direction);
+        }
+    }
+}
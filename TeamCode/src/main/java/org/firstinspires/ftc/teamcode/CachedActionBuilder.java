@@ -0,0 +1,349 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Action;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.SequentialAction;
+import com.acmerobotics.roadrunner.TimeTurn;
+import com.acmerobotics.roadrunner.TrajectoryActionBuilder;
+import com.acmerobotics.roadrunner.TrajectoryActionFactory;
+import com.acmerobotics.roadrunner.TurnActionFactory;
+import com.acmerobotics.roadrunner.TurnConstraints;
+import com.acmerobotics.roadrunner.Vector2d;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Records trajectory builder calls and caches the built trajectories on disk. The cache key hashes
+ * the recorded calls, the begin pose and the drive's constraint parameters; on a hit, build() reads
+ * the compiled trajectories back instead of running the builder, and on a miss it builds normally
+ * and writes the file for next time. Files no build has used recently are deleted once the cache
+ * grows past {@link #MAX_CACHE_BYTES}; bump {@link #FORMAT_VERSION} when a change to this class or
+ * the library alters what a builder call produces.
+ * <p>
+ * Only motion and turn segments are supported. Compose waits and other actions around the result.
+ */
+public final class CachedActionBuilder {
+    public static final File CACHE_DIR = new File(AppUtil.ROOT_FOLDER, "RoadRunner/trajectories");
+    public static final long MAX_CACHE_BYTES = 32L * 1024 * 1024;
+
+    static final int FORMAT_VERSION = 1; // part of the key
+    private static final long STALE_TMP_MILLIS = 60_000L;
+
+    private static final int SEGMENT_TRAJECTORY = 0;
+    private static final int SEGMENT_TURN = 1;
+
+    /**
+     * Creates the drive's underlying builder with the given action factories.
+     */
+    public interface BuilderFactory {
+        TrajectoryActionBuilder make(Pose2d beginPose,
+                                     TurnActionFactory turnFactory,
+                                     TrajectoryActionFactory trajectoryFactory);
+    }
+
+    private final BuilderFactory builderFactory;
+    private final TurnActionFactory turnFactory;
+    private final Function<CompiledTrajectory, Action> trajectoryFactory;
+    private final TurnConstraints turnConstraints;
+    private final double resolution;
+    private final Pose2d beginPose;
+
+    private final StringBuilder key = new StringBuilder();
+    private final List<UnaryOperator<TrajectoryActionBuilder>> calls = new ArrayList<>();
+
+    private boolean lastBuildHit;
+    private long lastBuildNanos;
+
+    /**
+     * @param paramsKey string capturing every drive parameter that affects the built trajectories
+     * @param turnConstraints the constraints the builder uses for turns
+     * @param resolution compiled trajectory resolution in seconds
+     */
+    public CachedActionBuilder(BuilderFactory builderFactory,
+                               TurnActionFactory turnFactory,
+                               Function<CompiledTrajectory, Action> trajectoryFactory,
+                               TurnConstraints turnConstraints,
+                               double resolution,
+                               String paramsKey,
+                               Pose2d beginPose) {
+        this.builderFactory = builderFactory;
+        this.turnFactory = turnFactory;
+        this.trajectoryFactory = trajectoryFactory;
+        this.turnConstraints = turnConstraints;
+        this.resolution = resolution;
+        this.beginPose = beginPose;
+
+        record("format", FORMAT_VERSION);
+        record("params", paramsKey);
+        record("resolution", resolution);
+        record("begin", beginPose.position.x, beginPose.position.y, beginPose.heading.toDouble());
+    }
+
+    public CachedActionBuilder setTangent(double r) {
+        record("setTangent", r);
+        calls.add(b -> b.setTangent(r));
+        return this;
+    }
+
+    public CachedActionBuilder setReversed(boolean reversed) {
+        record("setReversed", reversed);
+        calls.add(b -> b.setReversed(reversed));
+        return this;
+    }
+
+    public CachedActionBuilder turn(double angle) {
+        record("turn", angle);
+        calls.add(b -> b.turn(angle));
+        return this;
+    }
+
+    public CachedActionBuilder turnTo(double heading) {
+        record("turnTo", heading);
+        calls.add(b -> b.turnTo(heading));
+        return this;
+    }
+
+    public CachedActionBuilder lineToX(double posX) {
+        record("lineToX", posX);
+        calls.add(b -> b.lineToX(posX));
+        return this;
+    }
+
+    public CachedActionBuilder lineToY(double posY) {
+        record("lineToY", posY);
+        calls.add(b -> b.lineToY(posY));
+        return this;
+    }
+
+    public CachedActionBuilder strafeTo(Vector2d pos) {
+        record("strafeTo", pos.x, pos.y);
+        calls.add(b -> b.strafeTo(pos));
+        return this;
+    }
+
+    public CachedActionBuilder strafeToLinearHeading(Vector2d pos, double heading) {
+        record("strafeToLinearHeading", pos.x, pos.y, heading);
+        calls.add(b -> b.strafeToLinearHeading(pos, heading));
+        return this;
+    }
+
+    public CachedActionBuilder splineTo(Vector2d pos, double tangent) {
+        record("splineTo", pos.x, pos.y, tangent);
+        calls.add(b -> b.splineTo(pos, tangent));
+        return this;
+    }
+
+    public CachedActionBuilder splineToConstantHeading(Vector2d pos, double tangent) {
+        record("splineToConstantHeading", pos.x, pos.y, tangent);
+        calls.add(b -> b.splineToConstantHeading(pos, tangent));
+        return this;
+    }
+
+    public CachedActionBuilder splineToLinearHeading(Pose2d pose, double tangent) {
+        record("splineToLinearHeading", pose.position.x, pose.position.y, pose.heading.toDouble(), tangent);
+        calls.add(b -> b.splineToLinearHeading(pose, tangent));
+        return this;
+    }
+
+    public CachedActionBuilder splineToSplineHeading(Pose2d pose, double tangent) {
+        record("splineToSplineHeading", pose.position.x, pose.position.y, pose.heading.toDouble(), tangent);
+        calls.add(b -> b.splineToSplineHeading(pose, tangent));
+        return this;
+    }
+
+    public Action build() {
+        long start = System.nanoTime();
+
+        File file = new File(CACHE_DIR, hash() + ".bin");
+
+        Action action = null;
+        if (file.exists()) {
+            try {
+                action = load(file);
+            } catch (IOException e) {
+                // stale or corrupt; rebuild below and overwrite it
+            }
+        }
+
+        lastBuildHit = action != null;
+        if (action == null) {
+            action = buildAndSave(file);
+            prune(file);
+        } else {
+            // keeps the entry at the recent end for pruning
+            file.setLastModified(System.currentTimeMillis());
+        }
+
+        lastBuildNanos = System.nanoTime() - start;
+        return action;
+    }
+
+    /**
+     * @return whether the last build() was served from the cache
+     */
+    public boolean wasLastBuildHit() {
+        return lastBuildHit;
+    }
+
+    public long getLastBuildNanos() {
+        return lastBuildNanos;
+    }
+
+    private Action load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int segmentCount = in.readInt();
+            List<Action> actions = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                int type = in.readInt();
+                if (type == SEGMENT_TRAJECTORY) {
+                    actions.add(trajectoryFactory.apply(CompiledTrajectory.read(in)));
+                } else if (type == SEGMENT_TURN) {
+                    Pose2d turnBeginPose = new Pose2d(in.readDouble(), in.readDouble(), in.readDouble());
+                    double angle = in.readDouble();
+                    actions.add(turnFactory.make(new TimeTurn(turnBeginPose, angle, turnConstraints)));
+                } else {
+                    throw new IOException("unknown segment type " + type);
+                }
+            }
+            return new SequentialAction(actions);
+        }
+    }
+
+    private Action buildAndSave(File file) {
+        List<Object> segments = new ArrayList<>();
+
+        TrajectoryActionBuilder builder = builderFactory.make(beginPose,
+                t -> {
+                    segments.add(t);
+                    return turnFactory.make(t);
+                },
+                t -> {
+                    CompiledTrajectory compiled = new CompiledTrajectory(t, resolution);
+                    segments.add(compiled);
+                    return trajectoryFactory.apply(compiled);
+                });
+        for (UnaryOperator<TrajectoryActionBuilder> call : calls) {
+            builder = call.apply(builder);
+        }
+        Action action = builder.build();
+
+        try {
+            save(file, segments);
+        } catch (IOException e) {
+            // the cache is best effort; the built action is still good
+            file.delete();
+        }
+
+        return action;
+    }
+
+    private static void save(File file, List<Object> segments) throws IOException {
+        if (!CACHE_DIR.isDirectory() && !CACHE_DIR.mkdirs()) {
+            throw new IOException("unable to create " + CACHE_DIR);
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(segments.size());
+            for (Object segment : segments) {
+                if (segment instanceof CompiledTrajectory) {
+                    out.writeInt(SEGMENT_TRAJECTORY);
+                    ((CompiledTrajectory) segment).write(out);
+                } else {
+                    TimeTurn turn = (TimeTurn) segment;
+                    out.writeInt(SEGMENT_TURN);
+                    out.writeDouble(turn.beginPose.position.x);
+                    out.writeDouble(turn.beginPose.position.y);
+                    out.writeDouble(turn.beginPose.heading.toDouble());
+                    out.writeDouble(turn.angle);
+                }
+            }
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("unable to write " + file);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits {@link #MAX_CACHE_BYTES}, along
+     * with temporary files left by interrupted writes. Entries from changed builders or parameters
+     * are never hit again, so they age out this way.
+     * @param keep entry that is never deleted, e.g., the one just written
+     */
+    static void prune(File keep) {
+        File[] files = CACHE_DIR.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<File> entries = new ArrayList<>();
+        long totalBytes = 0;
+        for (File f : files) {
+            if (f.getName().endsWith(".tmp")) {
+                // another build may still be writing a recent one
+                if (System.currentTimeMillis() - f.lastModified() > STALE_TMP_MILLIS) {
+                    f.delete();
+                }
+            } else if (f.getName().endsWith(".bin")) {
+                entries.add(f);
+                totalBytes += f.length();
+            }
+        }
+
+        entries.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : entries) {
+            if (totalBytes <= MAX_CACHE_BYTES) {
+                break;
+            }
+            if (!f.equals(keep)) {
+                long length = f.length();
+                if (f.delete()) {
+                    totalBytes -= length;
+                }
+            }
+        }
+    }
+
+    private void record(String name, Object... args) {
+        key.append(name).append('(');
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(args[i]);
+        }
+        key.append(");");
+    }
+
+    private String hash() {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Arclength;
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.Pose2dDual;
+import com.acmerobotics.roadrunner.Rotation2dDual;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.TimeTrajectory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Dense lookup table of a {@link TimeTrajectory} sampled at a fixed time resolution. Building the
+ * table evaluates the profile and path once per sample; afterwards {@link #sample(double, double[])}
+ * is a constant-time linear interpolation that does not allocate, no matter how complex the path.
+ * The worst interpolation error, measured halfway between samples, is kept in
+ * {@link #maxPositionError} and {@link #maxHeadingError}.
+ * Tables can be written to and read back from a stream; a table read back has no
+ * {@link #timeTrajectory}.
+ */
+public final class CompiledTrajectory {
+    // world-frame target pose and its time derivatives
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int HEADING = 2; // unwrapped
+    public static final int VEL_X = 3;
+    public static final int VEL_Y = 4;
+    public static final int ANG_VEL = 5;
+    public static final int ACCEL_X = 6;
+    public static final int ACCEL_Y = 7;
+    public static final int ANG_ACCEL = 8;
+
+    // profile displacement and its time derivatives
+    public static final int DISP = 9;
+    public static final int DISP_VEL = 10;
+    public static final int DISP_ACCEL = 11;
+
+    // path pose derivatives with respect to arclength
+    public static final int PATH_X_D1 = 12;
+    public static final int PATH_X_D2 = 13;
+    public static final int PATH_Y_D1 = 14;
+    public static final int PATH_Y_D2 = 15;
+    public static final int PATH_HEADING_D1 = 16;
+    public static final int PATH_HEADING_D2 = 17;
+
+    public static final int STRIDE = 18;
+
+    private static final int FORMAT_VERSION = 1;
+
+    public final TimeTrajectory timeTrajectory; // null if read from a stream
+    public final double duration;
+    public final double resolution;
+
+    public final double maxPositionError;
+    public final double maxHeadingError;
+
+    private final int sampleCount;
+    private final double[] table;
+
+    /**
+     * @param resolution maximum time between samples in seconds
+     */
+    public CompiledTrajectory(TimeTrajectory timeTrajectory, double resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution must be positive");
+        }
+
+        this.timeTrajectory = timeTrajectory;
+        this.duration = timeTrajectory.duration;
+
+        // shrink the resolution slightly so the last sample lands exactly on the end
+        sampleCount = Math.max(2, (int) Math.ceil(duration / resolution) + 1);
+        this.resolution = duration > 0 ? duration / (sampleCount - 1) : resolution;
+        table = new double[sampleCount * STRIDE];
+
+        double[] row = new double[STRIDE];
+        for (int i = 0; i < sampleCount; i++) {
+            evaluate(Math.min(i * this.resolution, duration), row);
+            if (i > 0) {
+                double prevHeading = table[(i - 1) * STRIDE + HEADING];
+                row[HEADING] = prevHeading + wrap(row[HEADING] - prevHeading);
+            }
+            System.arraycopy(row, 0, table, i * STRIDE, STRIDE);
+        }
+
+        double[] interpolated = new double[STRIDE];
+        double maxPositionError = 0, maxHeadingError = 0;
+        for (int i = 0; i + 1 < sampleCount; i++) {
+            double t = Math.min((i + 0.5) * this.resolution, duration);
+            evaluate(t, row);
+            sample(t, interpolated);
+
+            maxPositionError = Math.max(maxPositionError,
+                    Math.hypot(row[X] - interpolated[X], row[Y] - interpolated[Y]));
+            maxHeadingError = Math.max(maxHeadingError,
+                    Math.abs(wrap(row[HEADING] - interpolated[HEADING])));
+        }
+        this.maxPositionError = maxPositionError;
+        this.maxHeadingError = maxHeadingError;
+    }
+
+    private CompiledTrajectory(double duration, double resolution,
+                               double maxPositionError, double maxHeadingError, double[] table) {
+        this.timeTrajectory = null;
+        this.duration = duration;
+        this.resolution = resolution;
+        this.maxPositionError = maxPositionError;
+        this.maxHeadingError = maxHeadingError;
+        this.sampleCount = table.length / STRIDE;
+        this.table = table;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeDouble(duration);
+        out.writeDouble(resolution);
+        out.writeDouble(maxPositionError);
+        out.writeDouble(maxHeadingError);
+        out.writeInt(sampleCount);
+        for (double v : table) {
+            out.writeDouble(v);
+        }
+    }
+
+    public static CompiledTrajectory read(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported compiled trajectory version " + version);
+        }
+
+        double duration = in.readDouble();
+        double resolution = in.readDouble();
+        double maxPositionError = in.readDouble();
+        double maxHeadingError = in.readDouble();
+        int sampleCount = in.readInt();
+        if (sampleCount < 2 || resolution <= 0) {
+            throw new IOException("corrupt compiled trajectory");
+        }
+
+        double[] table = new double[sampleCount * STRIDE];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = in.readDouble();
+        }
+
+        return new CompiledTrajectory(duration, resolution, maxPositionError, maxHeadingError, table);
+    }
+
+    /**
+     * Returns sample positions roughly spacing apart along the trajectory, for drawing.
+     * @return {xPoints, yPoints}
+     */
+    public double[][] polyline(double spacing) {
+        int count = 0;
+        double lastX = Double.NaN, lastY = Double.NaN;
+        for (int i = 0; i < sampleCount; i++) {
+            if (keepPolylinePoint(i, lastX, lastY, spacing)) {
+                lastX = table[i * STRIDE + X];
+                lastY = table[i * STRIDE + Y];
+                count++;
+            }
+        }
+
+        double[] xPoints = new double[count], yPoints = new double[count];
+        count = 0;
+        lastX = Double.NaN;
+        lastY = Double.NaN;
+        for (int i = 0; i < sampleCount; i++) {
+            if (keepPolylinePoint(i, lastX, lastY, spacing)) {
+                lastX = xPoints[count] = table[i * STRIDE + X];
+                lastY = yPoints[count] = table[i * STRIDE + Y];
+                count++;
+            }
+        }
+
+        return new double[][] {xPoints, yPoints};
+    }
+
+    private boolean keepPolylinePoint(int i, double lastX, double lastY, double spacing) {
+        return i == 0 || i == sampleCount - 1
+                || Math.hypot(table[i * STRIDE + X] - lastX, table[i * STRIDE + Y] - lastY) >= spacing;
+    }
+
+    /**
+     * Interpolates the table at time t (clamped to [0, duration]).
+     * @param out array of length {@link #STRIDE} indexed by the column constants
+     */
+    public void sample(double t, double[] out) {
+        double u = Math.max(0.0, Math.min(t, duration)) / resolution;
+        int i = Math.min((int) u, sampleCount - 2);
+        double s = Math.min(u - i, 1.0);
+
+        int a = i * STRIDE, b = a + STRIDE;
+        for (int j = 0; j < STRIDE; j++) {
+            out[j] = table[a + j] + s * (table[b + j] - table[a + j]);
+        }
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    private void evaluate(double t, double[] row) {
+        DualNum<Time> disp = timeTrajectory.profile.get(t);
+        Pose2dDual<Arclength> pathPose = timeTrajectory.path.get(disp.value(), 3);
+        Pose2dDual<Time> pose = pathPose.reparam(disp);
+
+        row[X] = pose.position.x.get(0);
+        row[Y] = pose.position.y.get(0);
+        row[HEADING] = heading(pose.heading, 0);
+        row[VEL_X] = pose.position.x.get(1);
+        row[VEL_Y] = pose.position.y.get(1);
+        row[ANG_VEL] = heading(pose.heading, 1);
+        row[ACCEL_X] = pose.position.x.get(2);
+        row[ACCEL_Y] = pose.position.y.get(2);
+        row[ANG_ACCEL] = heading(pose.heading, 2);
+
+        row[DISP] = disp.get(0);
+        row[DISP_VEL] = disp.get(1);
+        row[DISP_ACCEL] = disp.get(2);
+
+        row[PATH_X_D1] = pathPose.position.x.get(1);
+        row[PATH_X_D2] = pathPose.position.x.get(2);
+        row[PATH_Y_D1] = pathPose.position.y.get(1);
+        row[PATH_Y_D2] = pathPose.position.y.get(2);
+        row[PATH_HEADING_D1] = heading(pathPose.heading, 1);
+        row[PATH_HEADING_D2] = heading(pathPose.heading, 2);
+    }
+
+    // n-th derivative of the angle of a unit rotation, for n <= 2
+    private static <Param> double heading(Rotation2dDual<Param> r, int n) {
+        double real = r.real.get(0), imag = r.imag.get(0);
+        if (n == 0) {
+            return Math.atan2(imag, real);
+        }
+        return real * r.imag.get(n) - imag * r.real.get(n);
+    }
+
+    private static double wrap(double angle) {
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+}
@@ -0,0 +1,86 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2dDual;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.TimeTurn;
+
+/**
+ * Dense lookup table of a {@link TimeTurn} sampled at a fixed time resolution, the turn counterpart
+ * of {@link CompiledTrajectory}. Only the heading and its derivatives change during a turn, so only
+ * those are stored; {@link #sample(double, double[])} fills a full {@link CompiledTrajectory} row
+ * without allocating.
+ */
+public final class CompiledTurn {
+    private static final int HEADING = 0; // unwrapped
+    private static final int ANG_VEL = 1;
+    private static final int ANG_ACCEL = 2;
+    private static final int STRIDE = 3;
+
+    public final TimeTurn turn;
+    public final double duration;
+    public final double resolution;
+
+    private final double x, y;
+    private final int sampleCount;
+    private final double[] table;
+
+    /**
+     * @param resolution maximum time between samples in seconds
+     */
+    public CompiledTurn(TimeTurn turn, double resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution must be positive");
+        }
+
+        this.turn = turn;
+        this.duration = turn.duration;
+        x = turn.beginPose.position.x;
+        y = turn.beginPose.position.y;
+
+        // shrink the resolution slightly so the last sample lands exactly on the end
+        sampleCount = Math.max(2, (int) Math.ceil(duration / resolution) + 1);
+        this.resolution = duration > 0 ? duration / (sampleCount - 1) : resolution;
+        table = new double[sampleCount * STRIDE];
+
+        for (int i = 0; i < sampleCount; i++) {
+            Pose2dDual<Time> pose = turn.get(Math.min(i * this.resolution, duration));
+            double real = pose.heading.real.get(0), imag = pose.heading.imag.get(0);
+
+            double heading = Math.atan2(imag, real);
+            if (i > 0) {
+                double prevHeading = table[(i - 1) * STRIDE + HEADING];
+                double delta = heading - prevHeading;
+                heading = prevHeading + Math.atan2(Math.sin(delta), Math.cos(delta));
+            }
+
+            table[i * STRIDE + HEADING] = heading;
+            table[i * STRIDE + ANG_VEL] = real * pose.heading.imag.get(1) - imag * pose.heading.real.get(1);
+            table[i * STRIDE + ANG_ACCEL] = real * pose.heading.imag.get(2) - imag * pose.heading.real.get(2);
+        }
+    }
+
+    /**
+     * Interpolates the table at time t (clamped to [0, duration]).
+     * @param out array of length {@link CompiledTrajectory#STRIDE} indexed by its column constants;
+     *            columns a turn doesn't use are zeroed
+     */
+    public void sample(double t, double[] out) {
+        double u = Math.max(0.0, Math.min(t, duration)) / resolution;
+        int i = Math.min((int) u, sampleCount - 2);
+        double s = Math.min(u - i, 1.0);
+
+        int a = i * STRIDE, b = a + STRIDE;
+        for (int j = 0; j < CompiledTrajectory.STRIDE; j++) {
+            out[j] = 0.0;
+        }
+        out[CompiledTrajectory.X] = x;
+        out[CompiledTrajectory.Y] = y;
+        out[CompiledTrajectory.HEADING] = table[a + HEADING] + s * (table[b + HEADING] - table[a + HEADING]);
+        out[CompiledTrajectory.ANG_VEL] = table[a + ANG_VEL] + s * (table[b + ANG_VEL] - table[a + ANG_VEL]);
+        out[CompiledTrajectory.ANG_ACCEL] = table[a + ANG_ACCEL] + s * (table[b + ANG_ACCEL] - table[a + ANG_ACCEL]);
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+}
@@ -0,0 +1,294 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Action;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs the drive on its own fixed-rate thread: each period it either advances the current drive
+ * action or, when idle, just updates the pose estimate. The OpMode thread only submits actions and
+ * reads the published {@link State}, so slow OpMode code no longer stretches the control period.
+ * <p>
+ * While this thread is running, the OpMode must not touch the drive directly. The thread runs until
+ * {@link #stop()} is called or the condition passed to {@link #stopWhen(BooleanSupplier)} (e.g.,
+ * LinearOpMode::isStopRequested) becomes true. As a safety net, a watchdog stops the drive, drops
+ * its actions and exits if the OpMode hasn't called any method here for the heartbeat timeout;
+ * the next {@link #submit(Action)} starts it again. Anything thrown by an action or the pose
+ * update, errors included, stops the drive and the thread, and is rethrown on the OpMode thread by
+ * {@link #getState()}, {@link #isBusy()} and {@link #submit(Action)}.
+ */
+public final class DriveControlThread {
+    private static final long DASHBOARD_PERIOD_NANOS = 50_000_000L;
+
+    /**
+     * Immutable snapshot published after every control period.
+     */
+    public static final class State {
+        public final Pose2d pose;
+        public final PoseVelocity2d velocity;
+        public final long timestampNanos;
+        public final long tick;
+        public final boolean busy;
+
+        State(PoseSnapshot snapshot, long timestampNanos, long tick, boolean busy) {
+            this.pose = snapshot.pose;
+            this.velocity = snapshot.velocity;
+            this.timestampNanos = timestampNanos;
+            this.tick = tick;
+            this.busy = busy;
+        }
+    }
+
+    private final Runnable updatePoseEstimate;
+    private final Localizer localizer;
+    private final Runnable stopDrive;
+    private final long periodNanos;
+    private final long heartbeatTimeoutNanos;
+
+    private final ConcurrentLinkedQueue<Action> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger(); // queued plus running
+    private volatile boolean cancelRequested;
+
+    private volatile BooleanSupplier stopCondition = () -> false;
+    private volatile Throwable failure;
+
+    private volatile State state;
+    private volatile long heartbeatNanos;
+    private volatile long watchdogTrips;
+
+    private volatile long overruns, maxPeriodNanos;
+
+    private Thread thread;
+    private boolean started, stopped;
+
+    /**
+     * @param updatePoseEstimate updates the drive's pose estimate while no action is running
+     * @param stopDrive zeroes the drive motors
+     * @param periodMs control period
+     * @param heartbeatTimeoutMs watchdog timeout; 0 disables the watchdog
+     */
+    public DriveControlThread(Runnable updatePoseEstimate, Localizer localizer, Runnable stopDrive, long periodMs,
+                              long heartbeatTimeoutMs) {
+        this.updatePoseEstimate = updatePoseEstimate;
+        this.localizer = localizer;
+        this.stopDrive = stopDrive;
+        this.periodNanos = periodMs * 1_000_000L;
+        this.heartbeatTimeoutNanos = heartbeatTimeoutMs * 1_000_000L;
+
+        state = new State(localizer.getSnapshot(), System.nanoTime(), 0, false);
+    }
+
+    /**
+     * Makes the thread stop the drive and exit for good once stopRequested returns true. It is
+     * polled every period on the control thread.
+     */
+    public DriveControlThread stopWhen(BooleanSupplier stopRequested) {
+        stopCondition = stopRequested;
+        return this;
+    }
+
+    public synchronized void start() {
+        started = true;
+        if (thread != null || stopped) {
+            return;
+        }
+
+        heartbeat();
+        thread = new Thread(this::controlLoop, "DriveControlThread");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stops the thread and the drive for good, waiting for the thread to exit.
+     */
+    public void stop() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            stopped = true;
+            t = thread;
+            thread = null;
+        }
+
+        if (t != null) {
+            t.interrupt();
+            t.join();
+        }
+    }
+
+    /**
+     * Queues an action to run after the ones already submitted, restarting the thread if the
+     * watchdog stopped it.
+     */
+    public void submit(Action action) {
+        throwIfFailed();
+        heartbeat();
+
+        // an exiting thread drops the queue under this lock, so the action either runs on the
+        // current thread or starts a new one
+        synchronized (this) {
+            pending.incrementAndGet();
+            queue.add(action);
+            if (started) {
+                start();
+            }
+        }
+    }
+
+    /**
+     * Drops the current and queued actions and stops the drive on the next period.
+     */
+    public void cancel() {
+        heartbeat();
+        cancelRequested = true;
+    }
+
+    public State getState() {
+        throwIfFailed();
+        heartbeat();
+        return state;
+    }
+
+    public boolean isBusy() {
+        throwIfFailed();
+        heartbeat();
+        return pending.get() > 0;
+    }
+
+    private void throwIfFailed() {
+        Throwable e = failure;
+        if (e != null) {
+            throw new RuntimeException("drive control thread failed", e);
+        }
+    }
+
+    /**
+     * Keeps the thread alive when the OpMode has nothing else to call.
+     */
+    public void heartbeat() {
+        heartbeatNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the number of periods whose work took longer than the period
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getMaxPeriodNanos() {
+        return maxPeriodNanos;
+    }
+
+    /**
+     * @return the number of times the watchdog stopped the thread
+     */
+    public long getWatchdogTrips() {
+        return watchdogTrips;
+    }
+
+    // drops the current and queued actions; only called on the control thread
+    private void dropActions(boolean hadCurrent) {
+        if (hadCurrent) {
+            pending.decrementAndGet();
+        }
+        while (queue.poll() != null) {
+            pending.decrementAndGet();
+        }
+    }
+
+    private void controlLoop() {
+        Action current = null;
+        // actions write into the same packet until it is sent, so nothing put in between is lost
+        TelemetryPacket packet = new TelemetryPacket();
+        long nextDashboardNanos = 0;
+        long tick = 0;
+
+        long nextTickNanos = System.nanoTime();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long start = System.nanoTime();
+                if (stopCondition.getAsBoolean()) {
+                    synchronized (this) {
+                        stopped = true;
+                    }
+                    break;
+                }
+                if (heartbeatTimeoutNanos > 0 && start - heartbeatNanos > heartbeatTimeoutNanos) {
+                    watchdogTrips++;
+                    break;
+                }
+
+                if (cancelRequested) {
+                    cancelRequested = false;
+                    dropActions(current != null);
+                    current = null;
+                    stopDrive.run();
+                }
+
+                if (current == null) {
+                    current = queue.poll();
+                }
+
+                if (current != null) {
+                    if (!current.run(packet)) {
+                        current = null;
+                        pending.decrementAndGet();
+                    }
+
+                    // send the last packet of an action right away
+                    if (start >= nextDashboardNanos || current == null) {
+                        FtcDashboard.getInstance().sendTelemetryPacket(packet);
+                        nextDashboardNanos = start + DASHBOARD_PERIOD_NANOS;
+                        packet = new TelemetryPacket();
+                    }
+                } else {
+                    updatePoseEstimate.run();
+                }
+
+                long end = System.nanoTime();
+                state = new State(localizer.getSnapshot(), end, ++tick, current != null);
+
+                long elapsed = end - start;
+                if (elapsed > maxPeriodNanos) {
+                    maxPeriodNanos = elapsed;
+                }
+                if (elapsed > periodNanos) {
+                    overruns++;
+                }
+
+                nextTickNanos += periodNanos;
+                long sleepNanos = nextTickNanos - System.nanoTime();
+                if (sleepNanos > 0) {
+                    Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+                } else {
+                    // fell behind; don't try to catch up with back-to-back periods
+                    nextTickNanos = System.nanoTime();
+                }
+            }
+        } catch (InterruptedException e) {
+            // asked to stop
+        } catch (Throwable e) {
+            // an Error too; the drive still stops below and the OpMode thread reports it
+            failure = e;
+        } finally {
+            stopDrive.run();
+            state = new State(localizer.getSnapshot(), System.nanoTime(), tick, false);
+
+            synchronized (this) {
+                // nothing runs the dropped actions; isBusy() must not wait on them
+                dropActions(current != null);
+                if (thread == Thread.currentThread()) {
+                    thread = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.ftc.FlightRecorder;
+import com.qualcomm.robotcore.hardware.IMU;
+
+/**
+ * Fuses odometry, IMU heading and absolute pose fixes with a {@link PoseEkf}. The wrapped
+ * localizer (typically a {@link ThreeDeadWheelLocalizer} or {@link TwoDeadWheelLocalizer}) supplies
+ * the motion between updates; the IMU, if given, corrects heading every update; and vision fixes
+ * from AprilTags or a Limelight are passed to {@link #addVisionMeasurement}. The IMU is polled by an
+ * {@link ImuSampler}, so an update never waits on the I2C bus.
+ * <p>
+ * Don't pass the IMU when wrapping a {@link TwoDeadWheelLocalizer}: its heading already comes from
+ * that IMU, and fusing it twice would make the filter overconfident. The wrapped localizer keeps
+ * its own frame and must not be set or updated directly.
+ * <p>
+ * {@link #addVisionMeasurement} may be called from a camera thread while the control thread calls
+ * {@link #update()}; the filter state is guarded by one lock, which is never held across the
+ * odometry or IMU reads.
+ */
+@Config
+public final class EkfLocalizer implements Localizer {
+    public static class Params {
+        // odometry noise, as variance per unit of motion
+        public double odoVarXYPerIn = 0.0005; // in^2 per in traveled
+        public double odoVarHeadingPerRad = 0.0005; // rad^2 per rad turned
+        public double odoVarHeadingPerIn = 0.00005; // rad^2 per in traveled
+
+        // IMU parameters
+        public double imuHeadingStd = 0.01; // rad
+        public double imuGate = 9.0; // squared Mahalanobis distance; 3 sigma
+        public long imuSamplePeriodMs = 5;
+        public long imuMaxExtrapolationMs = 50;
+
+        // vision parameters
+        public double visionGate = 11.34; // squared Mahalanobis distance; 99% for 3 DoF
+
+        // uncertainty after setPose()
+        public double initialXYStd = 0.5; // in
+        public double initialHeadingStd = 0.02; // rad
+    }
+
+    public static Params PARAMS = new Params();
+
+    public final Localizer odometry;
+    public final IMU imu; // may be null
+    public final ImuSampler imuSampler; // null without an IMU
+
+    private final Object lock = new Object();
+    private final PoseEkf ekf; // and everything below, guarded by lock
+
+    private double lastOdoX, lastOdoY, lastOdoHeading;
+    private boolean imuOffsetValid;
+    private double imuOffset; // world heading minus IMU yaw
+
+    private Pose2d pose; // null when it needs to be rebuilt from the filter
+    private volatile PoseSnapshot snapshot;
+
+    private final LatencyHistogram filterLatency = new LatencyHistogram(1_000, 5_000);
+    private long acceptedVision, rejectedVision, rejectedImu;
+
+    /**
+     * Starts at the wrapped localizer's current pose.
+     * @param imu IMU for heading corrections, or null for none
+     */
+    public EkfLocalizer(Localizer odometry, IMU imu) {
+        this.odometry = odometry;
+        this.imu = imu;
+        imuSampler = imu == null ? null
+                : new ImuSampler(imu, PARAMS.imuSamplePeriodMs, PARAMS.imuMaxExtrapolationMs, false);
+
+        Pose2d odoPose = odometry.getPose();
+        lastOdoX = odoPose.position.x;
+        lastOdoY = odoPose.position.y;
+        lastOdoHeading = odoPose.heading.toDouble();
+
+        ekf = new PoseEkf(lastOdoX, lastOdoY, lastOdoHeading,
+                PARAMS.initialXYStd * PARAMS.initialXYStd,
+                PARAMS.initialHeadingStd * PARAMS.initialHeadingStd);
+
+        FlightRecorder.write("EKF_PARAMS", PARAMS);
+
+        pose = odoPose;
+        snapshot = PoseSnapshot.initial(odoPose);
+    }
+
+    @Override
+    public void setPose(Pose2d pose) {
+        synchronized (lock) {
+            ekf.reset(pose.position.x, pose.position.y, pose.heading.toDouble(),
+                    PARAMS.initialXYStd * PARAMS.initialXYStd,
+                    PARAMS.initialHeadingStd * PARAMS.initialHeadingStd);
+            imuOffsetValid = false;
+
+            this.pose = pose;
+            snapshot = snapshot.next(pose, snapshot.velocity);
+        }
+    }
+
+    @Override
+    public Pose2d getPose() {
+        synchronized (lock) {
+            if (pose == null) {
+                pose = new Pose2d(ekf.getX(), ekf.getY(), ekf.getHeading());
+            }
+            return pose;
+        }
+    }
+
+    @Override
+    public PoseSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public PoseVelocity2d update() {
+        PoseVelocity2d vel = odometry.update();
+        long odoNanos = System.nanoTime();
+
+        Pose2d odoPose = odometry.getPose();
+        double odoX = odoPose.position.x;
+        double odoY = odoPose.position.y;
+        double odoHeading = odoPose.heading.toDouble();
+
+        // the IMU's yaw brought up to the odometry reading
+        double yaw = imuSampler != null ? imuSampler.getYaw(odoNanos) : 0.0;
+
+        synchronized (lock) {
+            return updateLocked(odoX, odoY, odoHeading, yaw, vel);
+        }
+    }
+
+    private PoseVelocity2d updateLocked(double odoX, double odoY, double odoHeading, double yaw, PoseVelocity2d vel) {
+        long start = System.nanoTime();
+
+        // odometry motion since the last update, in the robot frame at the last update
+        double cos = Math.cos(lastOdoHeading), sin = Math.sin(lastOdoHeading);
+        double worldDx = odoX - lastOdoX, worldDy = odoY - lastOdoY;
+        double dx = cos * worldDx + sin * worldDy;
+        double dy = -sin * worldDx + cos * worldDy;
+        double dheading = Math.atan2(Math.sin(odoHeading - lastOdoHeading), Math.cos(odoHeading - lastOdoHeading));
+
+        lastOdoX = odoX;
+        lastOdoY = odoY;
+        lastOdoHeading = odoHeading;
+
+        double distance = Math.hypot(dx, dy);
+        ekf.predict(dx, dy, dheading,
+                PARAMS.odoVarXYPerIn * distance,
+                PARAMS.odoVarHeadingPerRad * Math.abs(dheading) + PARAMS.odoVarHeadingPerIn * distance);
+
+        if (imu != null) {
+            if (!imuOffsetValid) {
+                imuOffset = ekf.getHeading() - yaw;
+                imuOffsetValid = true;
+            } else if (!ekf.correctHeading(yaw + imuOffset,
+                    PARAMS.imuHeadingStd * PARAMS.imuHeadingStd, PARAMS.imuGate)) {
+                rejectedImu++;
+            }
+        }
+
+        filterLatency.record(System.nanoTime() - start);
+
+        pose = null;
+        snapshot = snapshot.next(getPose(), vel);
+        return vel;
+    }
+
+    /**
+     * Fuses an absolute pose fix. Fixes that disagree too much with the estimate, given both
+     * uncertainties, are rejected. The snapshot picks up the correction on the next update().
+     * @param xyStd standard deviation of the fix's position in inches
+     * @param headingStd standard deviation of the fix's heading in radians
+     * @return whether the fix was used
+     */
+    public boolean addVisionMeasurement(Pose2d measured, double xyStd, double headingStd) {
+        synchronized (lock) {
+            long start = System.nanoTime();
+            boolean accepted = ekf.correctPose(measured.position.x, measured.position.y, measured.heading.toDouble(),
+                    xyStd * xyStd, headingStd * headingStd, PARAMS.visionGate);
+            filterLatency.record(System.nanoTime() - start);
+
+            if (accepted) {
+                acceptedVision++;
+                pose = null;
+            } else {
+                rejectedVision++;
+            }
+            return accepted;
+        }
+    }
+
+    /**
+     * @return time spent in the filter math per update or vision fix, excluding sensor reads and
+     * waits for the lock; recorded under the lock, so read it from the thread calling update()
+     */
+    public LatencyHistogram getFilterLatency() {
+        return filterLatency;
+    }
+
+    /**
+     * @return standard deviation of the position estimate along its worst axis in inches
+     */
+    public double getPositionStd() {
+        synchronized (lock) {
+            double a = ekf.getCovariance(0, 0), b = ekf.getCovariance(0, 1), d = ekf.getCovariance(1, 1);
+            double mean = 0.5 * (a + d);
+            return Math.sqrt(mean + Math.sqrt(0.25 * (a - d) * (a - d) + b * b));
+        }
+    }
+
+    public double getHeadingStd() {
+        synchronized (lock) {
+            return Math.sqrt(ekf.getCovariance(2, 2));
+        }
+    }
+
+    public long getAcceptedVision() {
+        synchronized (lock) {
+            return acceptedVision;
+        }
+    }
+
+    public long getRejectedVision() {
+        synchronized (lock) {
+            return rejectedVision;
+        }
+    }
+
+    public long getRejectedImu() {
+        synchronized (lock) {
+            return rejectedImu;
+        }
+    }
+}
@@ -22,15 +22,13 @@
 
 package org.firstinspires.ftc.teamcode;
 
-import static com.qualcomm.robotcore.util.TypeConversion.byteArrayToInt;
-
 import com.qualcomm.hardware.lynx.LynxI2cDeviceSynch;
 import com.qualcomm.robotcore.hardware.I2cAddr;
 import com.qualcomm.robotcore.hardware.I2cDeviceSynchDevice;
 import com.qualcomm.robotcore.hardware.I2cDeviceSynchSimple;
 import com.qualcomm.robotcore.hardware.configuration.annotations.DeviceProperties;
 import com.qualcomm.robotcore.hardware.configuration.annotations.I2cDeviceType;
-import com.qualcomm.robotcore.util.TypeConversion;
+import com.qualcomm.robotcore.util.RobotLog;
 
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
@@ -38,7 +36,6 @@ import org.firstinspires.ftc.robotcore.external.navigation.Pose2D;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Arrays;
 
 
 @I2cDeviceType
@@ -61,6 +58,37 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
     private float yVelocity    = 0;
     private float hVelocity    = 0;
 
+    private long bulkReadNanos; // System.nanoTime() at the middle of the last bulk read
+
+    private volatile Snapshot snapshot; // published by the polling thread only
+    private long snapshotSequence;
+
+    // background polling state
+    private static final long POLL_IDLE_TIMEOUT_NANOS = 2_000_000_000L;
+    private final Object pollLock = new Object();
+    private volatile long pollPeriodNanos;
+    private volatile long lastSnapshotRequestNanos;
+    private volatile boolean polling; // written under pollLock
+    private volatile RuntimeException pollFailure; // null after a successful read
+
+    private static final int BULK_READ_LENGTH = 40;
+
+    // smoothed transaction times, indexed by readData ordinal with the bulk read last
+    private static final double READ_TIME_SMOOTHING = 0.1;
+    private final double[] readNanos = new double[readData.values().length + 1];
+    private final long[] readCounts = new long[readData.values().length + 1];
+    private double writeNanos;
+    private long writeCount;
+
+    // configuration costs, for reporting what configure() saved
+    static final double NOMINAL_WRITE_MS = 2.0; // typical Lynx I2C write, until one is measured
+    static final double RESET_CALIBRATION_MS = 250.0; // IMU recalibration after resetPosAndIMU()
+
+    // reusable little-endian views; the SDK copies write data into its command before write()
+    // returns, so the write buffer can be refilled right after
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(BULK_READ_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
     private static final float goBILDA_SWINGARM_POD = 13.26291192f; //ticks-per-mm for the goBILDA Swingarm Pod
     private static final float goBILDA_4_BAR_POD    = 19.89436789f; //ticks-per-mm for the goBILDA 4-Bar Pod
 
@@ -82,7 +110,10 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
 
     @Override
     protected synchronized boolean doInitialize() {
-        ((LynxI2cDeviceSynch)(deviceClient)).setBusSpeed(LynxI2cDeviceSynch.BusSpeed.FAST_400K);
+        // the client is a simulated device in the unit tests
+        if (deviceClient instanceof LynxI2cDeviceSynch) {
+            ((LynxI2cDeviceSynch)(deviceClient)).setBusSpeed(LynxI2cDeviceSynch.BusSpeed.FAST_400K);
+        }
         return true;
     }
 
@@ -148,9 +179,59 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
         goBILDA_SWINGARM_POD,
         goBILDA_4_BAR_POD;
     }
-    //enum that captures a limited scope of read data. More options may be added in future update
+    //enum that captures a limited scope of read data. Each profile reads its registers one 4-byte
+    //transaction at a time, so a profile with several registers can cost more than the single bulk
+    //read; see getReadTimeMs() and measureReadProfiles() for what each costs on your bus
     public enum readData {
-        ONLY_UPDATE_HEADING,
+        ONLY_UPDATE_HEADING (Register.H_ORIENTATION),
+        POSE                (Register.X_POSITION, Register.Y_POSITION, Register.H_ORIENTATION),
+        VELOCITY            (Register.X_VELOCITY, Register.Y_VELOCITY, Register.H_VELOCITY),
+        ENCODERS            (Register.X_ENCODER_VALUE, Register.Y_ENCODER_VALUE),
+        STATUS_AND_POSE     (Register.DEVICE_STATUS, Register.X_POSITION, Register.Y_POSITION, Register.H_ORIENTATION);
+
+        private final Register[] registers;
+
+        readData(Register... registers){
+            this.registers = registers;
+        }
+    }
+
+    /**
+     * Everything decoded from one bulk read, along with when it was read. Snapshots are immutable
+     * and replaced as a whole, so a reader on another thread never sees fields from two reads.
+     */
+    public static final class Snapshot {
+        public final int deviceStatus; // raw status bits; see getDeviceStatus()
+        public final int loopTime; // us
+        public final int xEncoderValue, yEncoderValue; // ticks
+        public final float xPosition, yPosition; // mm
+        public final float hOrientation; // rad
+        public final float xVelocity, yVelocity; // mm/s
+        public final float hVelocity; // rad/s
+        public final long acquisitionNanos; // System.nanoTime() at the middle of the read
+        public final long sequence;
+
+        Snapshot(int deviceStatus, int loopTime, int xEncoderValue, int yEncoderValue,
+                 float xPosition, float yPosition, float hOrientation,
+                 float xVelocity, float yVelocity, float hVelocity,
+                 long acquisitionNanos, long sequence) {
+            this.deviceStatus = deviceStatus;
+            this.loopTime = loopTime;
+            this.xEncoderValue = xEncoderValue;
+            this.yEncoderValue = yEncoderValue;
+            this.xPosition = xPosition;
+            this.yPosition = yPosition;
+            this.hOrientation = hOrientation;
+            this.xVelocity = xVelocity;
+            this.yVelocity = yVelocity;
+            this.hVelocity = hVelocity;
+            this.acquisitionNanos = acquisitionNanos;
+            this.sequence = sequence;
+        }
+
+        public DeviceStatus getDeviceStatus() {
+            return lookupStatus(deviceStatus);
+        }
     }
 
 
@@ -158,8 +239,11 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
     @param reg the register to write the int to
      @param i the integer to write to the register
      */
-    private void writeInt(final Register reg, int i){
-        deviceClient.write(reg.bVal, TypeConversion.intToByteArray(i,ByteOrder.LITTLE_ENDIAN));
+    private synchronized void writeInt(final Register reg, int i){
+        long start = System.nanoTime();
+        writeBuffer.putInt(0, i);
+        deviceClient.write(reg.bVal, writeBuffer.array());
+        recordWriteTime(System.nanoTime() - start);
     }
 
     /**
@@ -167,18 +251,18 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
      * @param reg the register to read from
      * @return returns an int that contains the value stored in the read register
      */
-    private int readInt(Register reg){
-        return byteArrayToInt(deviceClient.read(reg.bVal,4), ByteOrder.LITTLE_ENDIAN);
+    private synchronized int readInt(Register reg){
+        return load(deviceClient.read(reg.bVal,4)).getInt(0);
     }
 
     /**
-     * Converts a byte array to a float value
-     * @param byteArray byte array to transform
-     * @param byteOrder order of byte array to convert
-     * @return the float value stored by the byte array
+     * Copies bytes read from the device into the reusable read buffer
+     * @param bytes bytes read from the device, at most BULK_READ_LENGTH long
+     * @return the read buffer, for absolute little-endian reads
      */
-    private float byteArrayToFloat(byte[] byteArray, ByteOrder byteOrder){
-        return ByteBuffer.wrap(byteArray).order(byteOrder).getFloat();
+    private ByteBuffer load(byte[] bytes){
+        System.arraycopy(bytes, 0, readBuffer.array(), 0, bytes.length);
+        return readBuffer;
     }
     /**
      * Reads a float from a register
@@ -186,27 +270,19 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
      * @return the float value stored in that register
      */
 
-    private float readFloat(Register reg){
-        return byteArrayToFloat(deviceClient.read(reg.bVal,4),ByteOrder.LITTLE_ENDIAN);
+    private synchronized float readFloat(Register reg){
+        return load(deviceClient.read(reg.bVal,4)).getFloat(0);
     }
 
 
     /**
-     * Converts a float to a byte array
-     * @param value the float array to convert
-     * @return the byte array converted from the float
+     * Converts a float to little-endian bytes in the reusable write buffer
+     * @param value the float to convert
+     * @return the write buffer's backing array, valid until the next write
      */
-    private byte [] floatToByteArray (float value, ByteOrder byteOrder) {
-        return ByteBuffer.allocate(4).order(byteOrder).putFloat(value).array();
-    }
-
-    /**
-     * Writes a byte array to a register on the i2c device
-     * @param reg the register to write to
-     * @param bytes the byte array to write
-     */
-    private void writeByteArray (Register reg, byte[] bytes){
-        deviceClient.write(reg.bVal,bytes);
+    private byte [] floatToByteArray (float value) {
+        writeBuffer.putFloat(0, value);
+        return writeBuffer.array();
     }
 
     /**
@@ -214,9 +290,15 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
      * @param reg the register to write to
      * @param f the float to write
      */
-    private void writeFloat (Register reg, float f){
-        byte[] bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putFloat(f).array();
-        deviceClient.write(reg.bVal,bytes);
+    private synchronized void writeFloat (Register reg, float f){
+        long start = System.nanoTime();
+        deviceClient.write(reg.bVal,floatToByteArray(f));
+        recordWriteTime(System.nanoTime() - start);
+    }
+
+    private void recordWriteTime(long nanos){
+        writeNanos = writeCount == 0 ? nanos : writeNanos + READ_TIME_SMOOTHING * (nanos - writeNanos);
+        writeCount++;
     }
 
     /**
@@ -224,7 +306,7 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
      * @param s int to lookup
      * @return the Odometry Computer state
      */
-    private DeviceStatus lookupStatus (int s){
+    private static DeviceStatus lookupStatus (int s){
         if ((s & DeviceStatus.CALIBRATING.status) != 0){
             return DeviceStatus.CALIBRATING;
         }
@@ -254,30 +336,300 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
     /**
      * Call this once per loop to read new data from the Odometry Computer. Data will only update once this is called.
      */
-    public void update(){
-        byte[] bArr   = deviceClient.read(Register.BULK_READ.bVal, 40);
-        deviceStatus  = byteArrayToInt(Arrays.copyOfRange  (bArr, 0, 4),  ByteOrder.LITTLE_ENDIAN);
-        loopTime      = byteArrayToInt(Arrays.copyOfRange  (bArr, 4, 8),  ByteOrder.LITTLE_ENDIAN);
-        xEncoderValue = byteArrayToInt(Arrays.copyOfRange  (bArr, 8, 12), ByteOrder.LITTLE_ENDIAN);
-        yEncoderValue = byteArrayToInt(Arrays.copyOfRange  (bArr, 12,16), ByteOrder.LITTLE_ENDIAN);
-        xPosition     = byteArrayToFloat(Arrays.copyOfRange(bArr, 16,20), ByteOrder.LITTLE_ENDIAN);
-        yPosition     = byteArrayToFloat(Arrays.copyOfRange(bArr, 20,24), ByteOrder.LITTLE_ENDIAN);
-        hOrientation  = byteArrayToFloat(Arrays.copyOfRange(bArr, 24,28), ByteOrder.LITTLE_ENDIAN);
-        xVelocity     = byteArrayToFloat(Arrays.copyOfRange(bArr, 28,32), ByteOrder.LITTLE_ENDIAN);
-        yVelocity     = byteArrayToFloat(Arrays.copyOfRange(bArr, 32,36), ByteOrder.LITTLE_ENDIAN);
-        hVelocity     = byteArrayToFloat(Arrays.copyOfRange(bArr, 36,40), ByteOrder.LITTLE_ENDIAN);
+    public synchronized void update(){
+        long start    = System.nanoTime();
+        byte[] bArr   = deviceClient.read(Register.BULK_READ.bVal, BULK_READ_LENGTH);
+        long end      = System.nanoTime();
+        recordReadTime(readNanos.length - 1, end - start);
+        ByteBuffer b  = load(bArr);
+        deviceStatus  = b.getInt(0);
+        loopTime      = b.getInt(4);
+        xEncoderValue = b.getInt(8);
+        yEncoderValue = b.getInt(12);
+        xPosition     = b.getFloat(16);
+        yPosition     = b.getFloat(20);
+        hOrientation  = b.getFloat(24);
+        xVelocity     = b.getFloat(28);
+        yVelocity     = b.getFloat(32);
+        hVelocity     = b.getFloat(36);
+        bulkReadNanos = start + (end - start) / 2;
+    }
+
+    // one read of the polling thread; update() alone doesn't allocate a snapshot
+    private synchronized void poll(){
+        update();
+        snapshot = new Snapshot(deviceStatus, loopTime, xEncoderValue, yEncoderValue,
+                xPosition, yPosition, hOrientation, xVelocity, yVelocity, hVelocity,
+                bulkReadNanos, ++snapshotSequence);
+    }
+
+    /**
+     * Reads BULK_READ on a background thread every periodMs instead of waiting for update() calls.
+     * Each read publishes a new {@link Snapshot}. Like the other samplers, the thread starts on
+     * the next {@link #getSnapshot()} and exits once nobody has asked for a snapshot for a while,
+     * so it doesn't outlive the OpMode. Don't call update() while polling; the thread already
+     * does.
+     * @param periodMs time between reads; 0 stops polling
+     */
+    public void setPollingPeriod(long periodMs){
+        pollPeriodNanos = periodMs * 1_000_000L;
+    }
+
+    public boolean isPolling(){
+        return polling;
+    }
+
+    /**
+     * @return the newest read of the polling thread, or null before the first one; update() calls
+     * don't publish snapshots. Never touches the bus. The snapshot goes stale if polling fails;
+     * check {@link #getPollFailure()}.
+     */
+    public Snapshot getSnapshot(){
+        lastSnapshotRequestNanos = System.nanoTime();
+        if (pollPeriodNanos > 0) {
+            ensurePolling();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the exception that stopped the polling thread, or null if its last read succeeded.
+     * The next {@link #getSnapshot()} starts polling again.
+     */
+    public RuntimeException getPollFailure(){
+        return pollFailure;
+    }
+
+    private void ensurePolling(){
+        if (polling) {
+            return;
+        }
+
+        synchronized (pollLock) {
+            if (polling) {
+                return;
+            }
+            polling = true;
+        }
+
+        Thread thread = new Thread(this::pollLoop, "PinpointPoller");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void pollLoop(){
+        try {
+            long nextReadNanos = System.nanoTime();
+            while (true) {
+                long period = pollPeriodNanos;
+                synchronized (pollLock) {
+                    if (period <= 0 || System.nanoTime() - lastSnapshotRequestNanos > POLL_IDLE_TIMEOUT_NANOS) {
+                        polling = false;
+                        return;
+                    }
+                }
+
+                long sleepNanos = nextReadNanos - System.nanoTime();
+                if (sleepNanos > 0) {
+                    Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+                }
+
+                poll();
+                pollFailure = null;
+
+                long now = System.nanoTime();
+                nextReadNanos += period;
+                if (nextReadNanos < now) {
+                    nextReadNanos = now;
+                }
+            }
+        } catch (InterruptedException e) {
+            synchronized (pollLock) {
+                polling = false;
+            }
+        } catch (RuntimeException e) {
+            // e.g., the device was closed when the OpMode stopped; rethrowing would take down the
+            // app from this thread, so keep it for the OpMode and let the next getSnapshot() retry
+            pollFailure = e;
+            RobotLog.ee("PinpointPoller", e, "Pinpoint polling stopped");
+            synchronized (pollLock) {
+                polling = false;
+            }
+        }
     }
 
     /**
      * Call this once per loop to read new data from the Odometry Computer. This is an override of the update() function
-     * which allows a narrower range of data to be read from the device for faster read times. Currently ONLY_UPDATE_HEADING
-     * is supported.
-     * @param data GoBildaPinpointDriver.readData.ONLY_UPDATE_HEADING
+     * which allows a narrower range of data to be read from the device for faster read times. Only the fields in the
+     * profile are updated, and no {@link Snapshot} is published.
+     * @param data the registers to read, e.g. GoBildaPinpointDriver.readData.ONLY_UPDATE_HEADING
+     */
+    public synchronized void update(readData data) {
+        long start = System.nanoTime();
+        for (Register reg : data.registers) {
+            ByteBuffer b = load(deviceClient.read(reg.bVal, 4));
+            switch (reg) {
+                case DEVICE_STATUS:   deviceStatus  = b.getInt(0);   break;
+                case X_ENCODER_VALUE: xEncoderValue = b.getInt(0);   break;
+                case Y_ENCODER_VALUE: yEncoderValue = b.getInt(0);   break;
+                case X_POSITION:      xPosition     = b.getFloat(0); break;
+                case Y_POSITION:      yPosition     = b.getFloat(0); break;
+                case H_ORIENTATION:   hOrientation  = b.getFloat(0); break;
+                case X_VELOCITY:      xVelocity     = b.getFloat(0); break;
+                case Y_VELOCITY:      yVelocity     = b.getFloat(0); break;
+                case H_VELOCITY:      hVelocity     = b.getFloat(0); break;
+                default: throw new AssertionError(reg);
+            }
+        }
+        recordReadTime(data.ordinal(), System.nanoTime() - start);
+    }
+
+    private void recordReadTime(int index, long nanos){
+        readNanos[index] = readCounts[index] == 0 ? nanos
+                : readNanos[index] + READ_TIME_SMOOTHING * (nanos - readNanos[index]);
+        readCounts[index]++;
+    }
+
+    /**
+     * @param data a read profile, or null for the full bulk read
+     * @return smoothed time of that read in ms, or NaN if it hasn't been done yet
      */
-    public void update(readData data) {
-        if (data == readData.ONLY_UPDATE_HEADING) {
-            hOrientation = byteArrayToFloat(deviceClient.read(Register.H_ORIENTATION.bVal, 4), ByteOrder.LITTLE_ENDIAN);
+    public synchronized double getReadTimeMs(readData data){
+        int index = data == null ? readNanos.length - 1 : data.ordinal();
+        return readCounts[index] == 0 ? Double.NaN : readNanos[index] / 1e6;
+    }
+
+    /**
+     * @param data a read profile
+     * @return whether that profile has been measured to be faster than the full bulk read
+     */
+    public synchronized boolean isCheaperThanBulkRead(readData data){
+        int bulk = readNanos.length - 1;
+        return readCounts[data.ordinal()] > 0 && readCounts[bulk] > 0
+                && readNanos[data.ordinal()] < readNanos[bulk];
+    }
+
+    /**
+     * Times every read profile and the full bulk read, then returns a table of the results. This
+     * spends samples * (number of profiles + 1) reads on the bus, so run it while tuning, not in a
+     * match. Don't run it while polling.
+     * @param samples reads to time per profile
+     */
+    public String measureReadProfiles(int samples){
+        StringBuilder table = new StringBuilder(String.format("%-20s %8s %8s%n", "profile", "mean ms", "max ms"));
+        for (int p = 0; p <= readData.values().length; p++) {
+            readData data = p < readData.values().length ? readData.values()[p] : null;
+
+            long total = 0, max = 0;
+            for (int i = 0; i < samples; i++) {
+                long start = System.nanoTime();
+                if (data == null) {
+                    update();
+                } else {
+                    update(data);
+                }
+                long nanos = System.nanoTime() - start;
+                total += nanos;
+                max = Math.max(max, nanos);
+            }
+
+            table.append(String.format("%-20s %8.3f %8.3f%n",
+                    data == null ? "BULK_READ" : data.name(), total / 1e6 / samples, max / 1e6));
         }
+        return table.toString();
+    }
+
+    /**
+     * Outcome of {@link #configure}: which registers already matched and the net time saved against
+     * writing every register and resetting, as an unconditional init would. The saving is negative
+     * when the readback costs more than the writes it skips.
+     */
+    public static final class ConfigResult {
+        public final int registersChecked;
+        public final int registersWritten;
+        public final double readbackMs;
+        public final double writeMs;
+        public final double writeCostMs; // smoothed write time, or NOMINAL_WRITE_MS if none measured
+        public final double statusReadMs; // read deciding whether to reset, 0 until the decision
+        public final boolean resetSkipped;
+        public final double savedMs;
+
+        ConfigResult(int registersChecked, int registersWritten, double readbackMs, double writeMs,
+                     double writeCostMs, double statusReadMs, boolean resetSkipped){
+            this.registersChecked = registersChecked;
+            this.registersWritten = registersWritten;
+            this.readbackMs = readbackMs;
+            this.writeMs = writeMs;
+            this.writeCostMs = writeCostMs;
+            this.statusReadMs = statusReadMs;
+            this.resetSkipped = resetSkipped;
+
+            // baseline: every register written, then a reset (one write plus the recalibration)
+            double baselineMs = (registersChecked + 1) * writeCostMs + RESET_CALIBRATION_MS;
+            double actualMs = readbackMs + writeMs + statusReadMs
+                    + (resetSkipped ? 0 : writeCostMs + RESET_CALIBRATION_MS);
+            savedMs = baselineMs - actualMs;
+        }
+
+        /**
+         * @param statusReadMs time of the read used to decide on the reset
+         * @param reset whether the pose and IMU were reset after configuring
+         * @return this result with the reset decision counted in {@link #savedMs}
+         */
+        public ConfigResult withReset(double statusReadMs, boolean reset){
+            return new ConfigResult(registersChecked, registersWritten, readbackMs, writeMs,
+                    writeCostMs, statusReadMs, !reset);
+        }
+
+        @Override
+        public String toString(){
+            return String.format("wrote %d of %d registers, %s reset (readback %.2f ms, writes %.2f ms, net saved %.2f ms)",
+                    registersWritten, registersChecked, resetSkipped ? "skipped" : "did",
+                    readbackMs + statusReadMs, writeMs, savedMs);
+        }
+    }
+
+    /**
+     * Brings the encoder resolution and pod offsets to the given values, writing only the registers
+     * that differ. All three registers are read back in one pass before anything is written; the
+     * device keeps them while powered, so re-running an OpMode usually writes nothing. The result
+     * assumes a reset follows; report the actual decision with {@link ConfigResult#withReset}.
+     * @param ticksPerMm encoder resolution, as in {@link #setEncoderResolution(double)}
+     * @param xOffset X pod offset in mm, as in {@link #setOffsets}
+     * @param yOffset Y pod offset in mm, as in {@link #setOffsets}
+     */
+    public synchronized ConfigResult configure(double ticksPerMm, double xOffset, double yOffset){
+        Register[] registers = {Register.MM_PER_TICK, Register.X_POD_OFFSET, Register.Y_POD_OFFSET};
+        float[] desired = {(float) ticksPerMm, (float) xOffset, (float) yOffset};
+
+        long start = System.nanoTime();
+        float[] actual = new float[registers.length];
+        for (int i = 0; i < registers.length; i++) {
+            actual[i] = readFloat(registers[i]);
+        }
+        long readbackNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int written = 0;
+        for (int i = 0; i < registers.length; i++) {
+            // the device stores the float as sent, but allow for rounding in its conversions
+            if (Math.abs(actual[i] - desired[i]) > 1e-6f * Math.max(1f, Math.abs(desired[i]))) {
+                writeFloat(registers[i], desired[i]);
+                written++;
+            }
+        }
+        long writeTotalNanos = System.nanoTime() - start;
+
+        double writeCostMs = writeCount == 0 ? NOMINAL_WRITE_MS : writeNanos / 1e6;
+        return new ConfigResult(registers.length, written, readbackNanos / 1e6, writeTotalNanos / 1e6,
+                writeCostMs, 0, false);
+    }
+
+    /**
+     * @return smoothed time of a single register write in ms, or NaN before the first write
+     */
+    public synchronized double getWriteTimeMs(){
+        return writeCount == 0 ? Double.NaN : writeNanos / 1e6;
     }
 
     /**
@@ -334,10 +686,10 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
      */
     public void setEncoderResolution(GoBildaOdometryPods pods){
         if (pods == GoBildaOdometryPods.goBILDA_SWINGARM_POD) {
-            writeByteArray(Register.MM_PER_TICK, (floatToByteArray(goBILDA_SWINGARM_POD, ByteOrder.LITTLE_ENDIAN)));
+            writeFloat(Register.MM_PER_TICK, goBILDA_SWINGARM_POD);
         }
         if (pods == GoBildaOdometryPods.goBILDA_4_BAR_POD){
-            writeByteArray(Register.MM_PER_TICK,(floatToByteArray(goBILDA_4_BAR_POD, ByteOrder.LITTLE_ENDIAN)));
+            writeFloat(Register.MM_PER_TICK, goBILDA_4_BAR_POD);
         }
     }
 
@@ -347,7 +699,7 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
      * @param ticks_per_mm should be somewhere between 10 ticks/mm and 100 ticks/mm a goBILDA Swingarm pod is ~13.26291192
      */
     public void setEncoderResolution(double ticks_per_mm){
-        writeByteArray(Register.MM_PER_TICK,(floatToByteArray((float) ticks_per_mm,ByteOrder.LITTLE_ENDIAN)));
+        writeFloat(Register.MM_PER_TICK, (float) ticks_per_mm);
     }
 
     /**
@@ -360,7 +712,7 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
      * @param yawOffset A scalar for the robot's heading.
      */
     public void setYawScalar(double yawOffset){
-        writeByteArray(Register.YAW_SCALAR,(floatToByteArray((float) yawOffset, ByteOrder.LITTLE_ENDIAN)));
+        writeFloat(Register.YAW_SCALAR, (float) yawOffset);
     }
 
     /**
@@ -386,9 +738,9 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
      * @param pos a Pose2D describing the robot's new position.
      */
     public Pose2D setPosition(Pose2D pos){
-        writeByteArray(Register.X_POSITION,(floatToByteArray((float) pos.getX(DistanceUnit.MM), ByteOrder.LITTLE_ENDIAN)));
-        writeByteArray(Register.Y_POSITION,(floatToByteArray((float) pos.getY(DistanceUnit.MM),ByteOrder.LITTLE_ENDIAN)));
-        writeByteArray(Register.H_ORIENTATION,(floatToByteArray((float) pos.getHeading(AngleUnit.RADIANS),ByteOrder.LITTLE_ENDIAN)));
+        writeFloat(Register.X_POSITION, (float) pos.getX(DistanceUnit.MM));
+        writeFloat(Register.Y_POSITION, (float) pos.getY(DistanceUnit.MM));
+        writeFloat(Register.H_ORIENTATION, (float) pos.getHeading(AngleUnit.RADIANS));
         return pos;
     }
 
@@ -514,8 +866,6 @@ public class GoBildaPinpointDriver extends I2cDeviceSynchDevice<I2cDeviceSynchSi
                 hVelocity);
     }
 
-
-
 }
 
 
@@ -0,0 +1,214 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.IMU;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AngularVelocity;
+import org.firstinspires.ftc.robotcore.external.navigation.UnnormalizedAngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+
+/**
+ * Polls an {@link IMU} on a background thread so the control loop never waits on the I2C bus.
+ * Each poll publishes an immutable {@link Sample} with the unwrapped yaw, the yaw rate and when
+ * the reading was acquired. Callers ask for the yaw at the time of their other sensor readings,
+ * and it is interpolated between the last two samples or extrapolated from the newest one.
+ * Like {@link VoltageSampler}, the thread starts on the first read and exits once nobody has read
+ * a sample for a while.
+ */
+public final class ImuSampler {
+    private static final long IDLE_TIMEOUT_NANOS = 2_000_000_000L;
+
+    /**
+     * One IMU reading along with the yaw of the reading before it.
+     */
+    public static final class Sample {
+        public final double yaw; // unwrapped, rad
+        public final double yawRate; // rad/s
+        public final long timestampNanos;
+
+        public final double previousYaw;
+        public final long previousTimestampNanos;
+
+        // raw readings, for logging; angularVelocity is null unless the rate is read
+        public final YawPitchRollAngles angles;
+        public final AngularVelocity angularVelocity;
+
+        Sample(double yaw, double yawRate, long timestampNanos, double previousYaw, long previousTimestampNanos,
+               YawPitchRollAngles angles, AngularVelocity angularVelocity) {
+            this.yaw = yaw;
+            this.yawRate = yawRate;
+            this.timestampNanos = timestampNanos;
+            this.previousYaw = previousYaw;
+            this.previousTimestampNanos = previousTimestampNanos;
+            this.angles = angles;
+            this.angularVelocity = angularVelocity;
+        }
+    }
+
+    private final IMU imu;
+    private final long periodNanos;
+    private final long maxExtrapolationNanos;
+    private final boolean readYawRate;
+
+    private volatile Sample sample;
+    private volatile long lastReadNanos;
+
+    private volatile boolean running; // written under this
+
+    // see https://github.com/FIRST-Tech-Challenge/FtcRobotController/issues/617
+    private double lastRawYawRate, yawRateOffset;
+
+    /**
+     * @param periodMs time between polls
+     * @param maxExtrapolationMs limit on how far past the newest sample the yaw is extrapolated
+     * @param readYawRate whether to read the IMU's yaw rate; if not, the rate is the difference of
+     *                    the last two yaw readings, which saves an I2C transaction per poll
+     */
+    public ImuSampler(IMU imu, long periodMs, long maxExtrapolationMs, boolean readYawRate) {
+        this.imu = imu;
+        this.periodNanos = periodMs * 1_000_000L;
+        this.maxExtrapolationNanos = maxExtrapolationMs * 1_000_000L;
+        this.readYawRate = readYawRate;
+    }
+
+    /**
+     * Returns the newest sample. Never blocks once the first sample has been taken.
+     */
+    public Sample getSample() {
+        lastReadNanos = System.nanoTime();
+
+        Sample s = sample;
+        if (s == null) {
+            synchronized (this) {
+                if (sample == null) {
+                    sample = read(null);
+                }
+                s = sample;
+            }
+        }
+
+        ensureRunning();
+
+        return s;
+    }
+
+    /**
+     * Returns the unwrapped yaw at the given time, interpolated between the last two samples or
+     * extrapolated from the newest one with its yaw rate.
+     */
+    public double getYaw(long timestampNanos) {
+        return yawAt(getSample(), timestampNanos);
+    }
+
+    /**
+     * Like {@link #getYaw(long)}, but for a sample the caller already has.
+     */
+    public double yawAt(Sample s, long timestampNanos) {
+        if (timestampNanos >= s.timestampNanos) {
+            long dt = Math.min(timestampNanos - s.timestampNanos, maxExtrapolationNanos);
+            return s.yaw + s.yawRate * dt / 1e9;
+        }
+
+        if (timestampNanos <= s.previousTimestampNanos) {
+            return s.previousYaw;
+        }
+
+        double fraction = (double) (timestampNanos - s.previousTimestampNanos)
+                / (s.timestampNanos - s.previousTimestampNanos);
+        return s.previousYaw + fraction * (s.yaw - s.previousYaw);
+    }
+
+    private void ensureRunning() {
+        if (running) {
+            return;
+        }
+
+        synchronized (this) {
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+
+        Thread thread = new Thread(this::sampleLoop, "ImuSampler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void sampleLoop() {
+        long nextSampleNanos = System.nanoTime() + periodNanos;
+        try {
+            while (true) {
+                long sleepNanos = nextSampleNanos - System.nanoTime();
+                if (sleepNanos > 0) {
+                    Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+                }
+
+                synchronized (this) {
+                    if (System.nanoTime() - lastReadNanos > IDLE_TIMEOUT_NANOS) {
+                        running = false;
+                        return;
+                    }
+                }
+
+                sample = read(sample);
+
+                long now = System.nanoTime();
+                nextSampleNanos += periodNanos;
+                if (nextSampleNanos < now) {
+                    nextSampleNanos = now + periodNanos;
+                }
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                running = false;
+            }
+        }
+    }
+
+    private Sample read(Sample last) {
+        YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
+        long timestamp = angles.getAcquisitionTime() != 0 ? angles.getAcquisitionTime() : System.nanoTime();
+        if (last != null && timestamp <= last.timestampNanos) {
+            // the IMU hasn't produced a new reading
+            return last;
+        }
+
+        double rawYaw = angles.getYaw(AngleUnit.RADIANS);
+        double yaw = last == null ? rawYaw : last.yaw + wrap(rawYaw - last.yaw);
+
+        AngularVelocity angularVelocity = null;
+        double yawRate;
+        if (readYawRate) {
+            // Use degrees here to work around https://github.com/FIRST-Tech-Challenge/FtcRobotController/issues/1070
+            AngularVelocity angularVelocityDegrees = imu.getRobotAngularVelocity(AngleUnit.DEGREES);
+            angularVelocity = new AngularVelocity(
+                    UnnormalizedAngleUnit.RADIANS,
+                    (float) Math.toRadians(angularVelocityDegrees.xRotationRate),
+                    (float) Math.toRadians(angularVelocityDegrees.yRotationRate),
+                    (float) Math.toRadians(angularVelocityDegrees.zRotationRate),
+                    angularVelocityDegrees.acquisitionTime
+            );
+
+            double rawYawRate = angularVelocity.zRotationRate;
+            if (Math.abs(rawYawRate - lastRawYawRate) > Math.PI) {
+                yawRateOffset -= Math.signum(rawYawRate) * 2 * Math.PI;
+            }
+            lastRawYawRate = rawYawRate;
+            yawRate = yawRateOffset + rawYawRate;
+        } else if (last != null) {
+            yawRate = (yaw - last.yaw) / ((timestamp - last.timestampNanos) / 1e9);
+        } else {
+            yawRate = 0.0;
+        }
+
+        if (last == null) {
+            return new Sample(yaw, yawRate, timestamp, yaw, timestamp, angles, angularVelocity);
+        }
+        return new Sample(yaw, yawRate, timestamp, last.yaw, last.timestampNanos, angles, angularVelocity);
+    }
+
+    private static double wrap(double angle) {
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+}
@@ -0,0 +1,213 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+
+/**
+ * Wraps an odometry localizer and applies delayed absolute measurements (e.g., AprilTag
+ * detections) at the time they were taken rather than the time they arrive. The robot-frame motion
+ * of every update is kept in a fixed-capacity ring buffer; {@link #correct(Pose2d, long)} re-anchors
+ * the pose at the measurement time and replays the motion recorded since then. Corrections are
+ * linear in the buffer length and don't allocate.
+ * <p>
+ * The wrapped localizer keeps its own frame and must not be set or updated directly.
+ * {@link #correct(Pose2d, long)} may be called from a vision thread while the control thread calls
+ * {@link #update()}; both take the same lock, which is never held across hardware reads.
+ */
+public final class LatencyCompensatedLocalizer implements Localizer {
+    public final Localizer odometry;
+
+    private final Object lock = new Object();
+
+    // ring buffer of robot-frame motion since the previous entry
+    private final long[] timestamps;
+    private final double[] dxs, dys, dheadings;
+    private int head; // index of the oldest entry
+    private int size;
+
+    private double lastOdoX, lastOdoY, lastOdoHeading;
+
+    private double x, y, heading;
+    private Pose2d pose; // null when it needs to be rebuilt from the fields above
+    private volatile PoseSnapshot snapshot;
+
+    private long corrections, rejectedCorrections;
+
+    /**
+     * @param capacity number of updates to remember; measurements older than that are rejected
+     */
+    public LatencyCompensatedLocalizer(Localizer odometry, int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+
+        this.odometry = odometry;
+
+        timestamps = new long[capacity];
+        dxs = new double[capacity];
+        dys = new double[capacity];
+        dheadings = new double[capacity];
+
+        Pose2d odoPose = odometry.getPose();
+        lastOdoX = odoPose.position.x;
+        lastOdoY = odoPose.position.y;
+        lastOdoHeading = odoPose.heading.toDouble();
+
+        x = lastOdoX;
+        y = lastOdoY;
+        heading = lastOdoHeading;
+        pose = odoPose;
+        snapshot = PoseSnapshot.initial(odoPose);
+    }
+
+    @Override
+    public void setPose(Pose2d pose) {
+        synchronized (lock) {
+            x = pose.position.x;
+            y = pose.position.y;
+            heading = pose.heading.toDouble();
+            this.pose = pose;
+            snapshot = snapshot.next(pose, snapshot.velocity);
+        }
+    }
+
+    @Override
+    public Pose2d getPose() {
+        synchronized (lock) {
+            if (pose == null) {
+                pose = new Pose2d(x, y, heading);
+            }
+            return pose;
+        }
+    }
+
+    @Override
+    public PoseSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public PoseVelocity2d update() {
+        PoseVelocity2d vel = odometry.update();
+        long now = System.nanoTime();
+
+        Pose2d odoPose = odometry.getPose();
+        double odoX = odoPose.position.x;
+        double odoY = odoPose.position.y;
+        double odoHeading = odoPose.heading.toDouble();
+
+        // odometry motion since the last update, in the robot frame at the last update
+        double cos = Math.cos(lastOdoHeading), sin = Math.sin(lastOdoHeading);
+        double worldDx = odoX - lastOdoX, worldDy = odoY - lastOdoY;
+        double dx = cos * worldDx + sin * worldDy;
+        double dy = -sin * worldDx + cos * worldDy;
+        double dheading = wrap(odoHeading - lastOdoHeading);
+
+        lastOdoX = odoX;
+        lastOdoY = odoY;
+        lastOdoHeading = odoHeading;
+
+        synchronized (lock) {
+            add(now, dx, dy, dheading);
+            apply(dx, dy, dheading);
+
+            pose = null;
+            snapshot = snapshot.next(getPose(), vel);
+        }
+        return vel;
+    }
+
+    /**
+     * Re-anchors the pose at a measurement taken in the past and replays the odometry recorded
+     * since. The snapshot picks up the correction on the next update().
+     * @param acquisitionNanos System.nanoTime() when the measurement was taken, e.g., an AprilTag
+     *                         detection's frameAcquisitionNanoTime
+     * @return false if the measurement is older than the buffer and was ignored
+     */
+    public boolean correct(Pose2d measured, long acquisitionNanos) {
+        synchronized (lock) {
+            return correctLocked(measured, acquisitionNanos);
+        }
+    }
+
+    private boolean correctLocked(Pose2d measured, long acquisitionNanos) {
+        if (size == 0 || acquisitionNanos < timestamps[head]) {
+            rejectedCorrections++;
+            return false;
+        }
+
+        x = measured.position.x;
+        y = measured.position.y;
+        heading = measured.heading.toDouble();
+
+        // find the oldest entry that ends after the measurement
+        int i = size;
+        while (i > 0 && timestamps[physical(i - 1)] > acquisitionNanos) {
+            i--;
+        }
+
+        if (i < size) {
+            // the measurement falls inside entry i; replay the part after it, assuming the motion
+            // within one update is uniform
+            int a = physical(i - 1), b = physical(i);
+            double fraction = (double) (timestamps[b] - acquisitionNanos) / (timestamps[b] - timestamps[a]);
+            apply(fraction * dxs[b], fraction * dys[b], fraction * dheadings[b]);
+
+            for (int j = i + 1; j < size; j++) {
+                int k = physical(j);
+                apply(dxs[k], dys[k], dheadings[k]);
+            }
+        }
+
+        pose = null;
+        corrections++;
+        return true;
+    }
+
+    public long getCorrections() {
+        synchronized (lock) {
+            return corrections;
+        }
+    }
+
+    /**
+     * @return the number of measurements too old for the buffer
+     */
+    public long getRejectedCorrections() {
+        synchronized (lock) {
+            return rejectedCorrections;
+        }
+    }
+
+    private void add(long timestampNanos, double dx, double dy, double dheading) {
+        int i;
+        if (size < timestamps.length) {
+            i = (head + size) % timestamps.length;
+            size++;
+        } else {
+            i = head;
+            head = (head + 1) % timestamps.length;
+        }
+
+        timestamps[i] = timestampNanos;
+        dxs[i] = dx;
+        dys[i] = dy;
+        dheadings[i] = dheading;
+    }
+
+    // composes robot-frame motion onto the pose
+    private void apply(double dx, double dy, double dheading) {
+        double cos = Math.cos(heading), sin = Math.sin(heading);
+        x += cos * dx - sin * dy;
+        y += sin * dx + cos * dy;
+        heading += dheading;
+    }
+
+    private int physical(int i) {
+        return (head + i) % timestamps.length;
+    }
+
+    private static double wrap(double angle) {
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+}
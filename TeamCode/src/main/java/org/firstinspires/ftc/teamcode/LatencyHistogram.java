@@ -0,0 +1,84 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Fixed-size histogram of durations. Recording never allocates; percentiles are resolved to the
+ * bucket width, and anything past the last bucket is reported as the exact maximum.
+ */
+public final class LatencyHistogram {
+    private final long bucketNanos;
+    private final long[] counts;
+
+    private long overflowCount, totalCount, maxNanos;
+
+    /**
+     * @param bucketNanos width of each bucket
+     * @param bucketCount number of buckets; durations of at least bucketNanos * bucketCount overflow
+     */
+    public LatencyHistogram(long bucketNanos, int bucketCount) {
+        this.bucketNanos = bucketNanos;
+        counts = new long[bucketCount];
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        long bucket = nanos / bucketNanos;
+        if (bucket < counts.length) {
+            counts[(int) bucket]++;
+        } else {
+            overflowCount++;
+        }
+
+        totalCount++;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * @param q quantile in [0, 1]
+     * @return upper bound of the bucket holding the quantile, in nanoseconds
+     */
+    public long percentileNanos(double q) {
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(q * totalCount);
+        if (rank < 1) {
+            rank = 1;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min((i + 1) * bucketNanos, maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getOverflowCount() {
+        return overflowCount;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        overflowCount = 0;
+        totalCount = 0;
+        maxNanos = 0;
+    }
+}
@@ -22,4 +22,10 @@ public interface Localizer {
      * @return the Localizer's current velocity estimate
      */
     PoseVelocity2d update();
+
+    /**
+     * Returns the pose and velocity published by the last update() or setPose().
+     * Unlike the other methods, this is safe to call from any thread.
+     */
+    PoseSnapshot getSnapshot();
 }
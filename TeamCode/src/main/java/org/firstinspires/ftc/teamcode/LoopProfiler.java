@@ -0,0 +1,125 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.ftc.FlightRecorder;
+
+import org.firstinspires.ftc.teamcode.messages.LoopPhaseMessage;
+
+/**
+ * Times each phase of a drive control cycle into its own {@link LatencyHistogram}. Phases are
+ * delimited by {@link #mark(Phase)} calls between {@link #start()} and {@link #end(TelemetryPacket)};
+ * marks outside of a cycle are ignored. Summaries go to the flight recorder and the dashboard once
+ * per report period, and each one covers only the cycles since the previous report; the histograms
+ * are cleared after every report so a slow start doesn't dominate later summaries.
+ */
+public final class LoopProfiler {
+    public enum Phase {
+        SENSOR_READ,
+        LOCALIZER,
+        CONTROLLER,
+        FEEDFORWARD,
+        MOTOR_WRITE,
+        DASHBOARD,
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final long BUCKET_NANOS = 50_000;
+    private static final int BUCKET_COUNT = 1000;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+    private final LatencyHistogram total = new LatencyHistogram(BUCKET_NANOS, BUCKET_COUNT);
+
+    private final LoopPhaseMessage[] messages = new LoopPhaseMessage[PHASES.length + 1];
+    private final String[] channels = new String[PHASES.length + 1];
+    private final String[] keys = new String[PHASES.length + 1];
+
+    private final long reportPeriodNanos;
+    private long nextReportNanos;
+
+    private boolean active;
+    private long cycleStartNanos, phaseStartNanos;
+
+    public LoopProfiler(long reportPeriodNanos) {
+        this.reportPeriodNanos = reportPeriodNanos;
+
+        for (int i = 0; i <= PHASES.length; i++) {
+            String name = i < PHASES.length ? PHASES[i].name() : "TOTAL";
+            if (i < PHASES.length) {
+                histograms[i] = new LatencyHistogram(BUCKET_NANOS, BUCKET_COUNT);
+            }
+            messages[i] = new LoopPhaseMessage();
+            channels[i] = "LOOP_" + name;
+            keys[i] = "loop " + name.toLowerCase() + " p50/p95/p99/max (ms)";
+        }
+    }
+
+    public void start() {
+        active = true;
+        cycleStartNanos = phaseStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the time since the previous mark (or start) as the duration of phase.
+     */
+    public void mark(Phase phase) {
+        if (!active) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        histograms[phase.ordinal()].record(now - phaseStartNanos);
+        phaseStartNanos = now;
+    }
+
+    /**
+     * Finishes the cycle and attaches the summaries to p if a report is due.
+     */
+    public void end(TelemetryPacket p) {
+        if (!active) {
+            return;
+        }
+        active = false;
+
+        long now = System.nanoTime();
+        total.record(now - cycleStartNanos);
+
+        if (now >= nextReportNanos) {
+            nextReportNanos = now + reportPeriodNanos;
+            report(p);
+            reset();
+        }
+    }
+
+    /**
+     * @return the histogram of phase for the current report period
+     */
+    public LatencyHistogram get(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : histograms) {
+            h.reset();
+        }
+        total.reset();
+    }
+
+    private void report(TelemetryPacket p) {
+        for (int i = 0; i <= PHASES.length; i++) {
+            LatencyHistogram h = i < PHASES.length ? histograms[i] : total;
+            LoopPhaseMessage m = messages[i].set(h.getCount(),
+                    h.percentileNanos(0.50) / 1e6,
+                    h.percentileNanos(0.95) / 1e6,
+                    h.percentileNanos(0.99) / 1e6,
+                    h.getMaxNanos() / 1e6);
+            FlightRecorder.write(channels[i], m);
+
+            p.put(keys[i], String.format("%.2f / %.2f / %.2f / %.2f", m.p50, m.p95, m.p99, m.max));
+        }
+    }
+}
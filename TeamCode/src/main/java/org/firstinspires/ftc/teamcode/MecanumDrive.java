@@ -19,6 +19,8 @@ import com.acmerobotics.roadrunner.Time;
 import com.acmerobotics.roadrunner.TimeTrajectory;
 import com.acmerobotics.roadrunner.TimeTurn;
 import com.acmerobotics.roadrunner.TrajectoryActionBuilder;
+import com.acmerobotics.roadrunner.TrajectoryActionFactory;
+import com.acmerobotics.roadrunner.TurnActionFactory;
 import com.acmerobotics.roadrunner.TurnConstraints;
 import com.acmerobotics.roadrunner.VelConstraint;
 import com.acmerobotics.roadrunner.ftc.DownsampledWriter;
@@ -38,8 +40,6 @@ import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.IMU;
 import com.qualcomm.robotcore.hardware.VoltageSensor;
 
-import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
-import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
 import org.firstinspires.ftc.teamcode.messages.DriveCommandMessage;
 import org.firstinspires.ftc.teamcode.messages.MecanumCommandMessage;
 import org.firstinspires.ftc.teamcode.messages.MecanumLocalizerInputsMessage;
@@ -47,8 +47,6 @@ import org.firstinspires.ftc.teamcode.messages.PoseMessage;
 
 import java.lang.Math;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
 
 @Config
 public final class MecanumDrive {
@@ -88,6 +86,31 @@ public final class MecanumDrive {
         public double axialVelGain = 0.0;
         public double lateralVelGain = 0.0;
         public double headingVelGain = 0.0; // shared with turn
+
+        // motor output parameters
+        public double powerDeadband = 0.005; // skip writes this close to the last written power
+
+        // battery voltage sampling parameters
+        public long voltageSamplePeriodMs = 50;
+        public double voltageFilterTimeConstant = 0.25; // in seconds
+
+        // pose history parameters
+        public int poseHistoryCapacity = 100;
+
+        // trajectory compilation parameters
+        public double trajectoryResolution = 0.01; // seconds between lookup table samples
+
+        // control thread parameters
+        public long controlPeriodMs = 10;
+        public long controlHeartbeatTimeoutMs = 500; // watchdog; 0 disables it
+
+        // IMU sampler parameters
+        public long imuSamplePeriodMs = 5;
+        public long imuMaxExtrapolationMs = 50;
+
+        // velocity estimation parameters
+        public int velocityWindow = 0; // samples in the least-squares velocity fit; 0 uses the hub's velocity
+        public int velocityFitOrder = 1; // 1 for a line, 2 for a parabola
     }
 
     public static Params PARAMS = new Params();
@@ -105,46 +128,103 @@ public final class MecanumDrive {
     public final AccelConstraint defaultAccelConstraint =
             new ProfileAccelConstraint(PARAMS.minProfileAccel, PARAMS.maxProfileAccel);
 
+    // everything baked into the kinematics and constraints above, for keying the trajectory cache
+    // trajectory builder settings; part of the cache key along with the constraints
+    private static final double ARC_LENGTH_SAMPLING_EPS = 1e-6;
+    private static final double PROFILE_DISP_RESOLUTION = 0.25;
+    private static final double PROFILE_ANGULAR_RESOLUTION = 0.1;
+    private static final double PROFILE_ANGLE_SAMPLING_EPS = 1e-2;
+    private static final double BEGIN_END_VEL = 0.0;
+
+    private final String constraintKey = "mecanum" + Arrays.toString(new double[] {
+            PARAMS.inPerTick, PARAMS.lateralInPerTick, PARAMS.trackWidthTicks,
+            PARAMS.maxWheelVel, PARAMS.minProfileAccel, PARAMS.maxProfileAccel,
+            PARAMS.maxAngVel, PARAMS.maxAngAccel,
+            ARC_LENGTH_SAMPLING_EPS, PROFILE_DISP_RESOLUTION, PROFILE_ANGULAR_RESOLUTION,
+            PROFILE_ANGLE_SAMPLING_EPS, BEGIN_END_VEL,
+    });
+
     public final DcMotorEx leftFront, leftBack, rightBack, rightFront;
 
+    public final MotorPowerCache motorPowers;
+
     public final VoltageSensor voltageSensor;
+    public final VoltageSampler voltageSampler;
+
+    // owns every hub in MANUAL mode; loops that don't call updatePoseEstimate() must call
+    // bulkReads.beginCycle() once per loop to see fresh encoder and sensor values
+    public final BulkReadManager bulkReads;
+
+    public final LoopProfiler profiler = new LoopProfiler(1_000_000_000);
 
     public final LazyImu lazyImu;
 
     public final Localizer localizer;
-    private final LinkedList<Pose2d> poseHistory = new LinkedList<>();
+    // only touch from the thread running the drive
+    public final PoseHistory poseHistory = new PoseHistory(PARAMS.poseHistoryCapacity);
+    private final double[] poseHistoryXPoints = new double[poseHistory.capacity()];
+    private final double[] poseHistoryYPoints = new double[poseHistory.capacity()];
 
     private final DownsampledWriter estimatedPoseWriter = new DownsampledWriter("ESTIMATED_POSE", 50_000_000);
     private final DownsampledWriter targetPoseWriter = new DownsampledWriter("TARGET_POSE", 50_000_000);
     private final DownsampledWriter driveCommandWriter = new DownsampledWriter("DRIVE_COMMAND", 50_000_000);
     private final DownsampledWriter mecanumCommandWriter = new DownsampledWriter("MECANUM_COMMAND", 50_000_000);
 
+    private final PoseMessage estimatedPoseMessage = new PoseMessage(new Pose2d(0, 0, 0));
+    private final PoseMessage targetPoseMessage = new PoseMessage(new Pose2d(0, 0, 0));
+    private final DriveCommandMessage driveCommandMessage = new DriveCommandMessage(0, 0, 0, 0, 0, 0);
+    private final MecanumCommandMessage mecanumCommandMessage = new MecanumCommandMessage(0, 0, 0, 0, 0);
+
+    private final MecanumFollower follower;
+
+    // null when the localizer reads the drive encoders itself
+    public final SlipMonitor slipMonitor;
+    private final SlipCheck slipCheck;
+
     public class DriveLocalizer implements Localizer {
         public final Encoder leftFront, leftBack, rightBack, rightFront;
         public final IMU imu;
+        public final ImuSampler imuSampler;
 
         private int lastLeftFrontPos, lastLeftBackPos, lastRightBackPos, lastRightFrontPos;
-        private Rotation2d lastHeading;
+        private double lastHeading; // unwrapped
         private boolean initialized;
         private Pose2d pose;
 
+        private final OdometryKernels.Mecanum odometry = new OdometryKernels.Mecanum(
+                PARAMS.inPerTick, kinematics.trackWidth, kinematics.lateralMultiplier);
+        private final OdometryKernels.Output odometryOutput = new OdometryKernels.Output();
+        private final OdometryKernels.PoseIntegrator integrator;
+        private final MecanumLocalizerInputsMessage inputsMessage = new MecanumLocalizerInputsMessage();
+        private volatile PoseSnapshot snapshot;
+
         public DriveLocalizer(Pose2d pose) {
-            leftFront = new OverflowEncoder(new RawEncoder(MecanumDrive.this.leftFront));
-            leftBack = new OverflowEncoder(new RawEncoder(MecanumDrive.this.leftBack));
-            rightBack = new OverflowEncoder(new RawEncoder(MecanumDrive.this.rightBack));
-            rightFront = new OverflowEncoder(new RawEncoder(MecanumDrive.this.rightFront));
+            leftFront = estimateVelocity(bulkReads.track(new OverflowEncoder(new RawEncoder(MecanumDrive.this.leftFront))));
+            leftBack = estimateVelocity(bulkReads.track(new OverflowEncoder(new RawEncoder(MecanumDrive.this.leftBack))));
+            rightBack = estimateVelocity(bulkReads.track(new OverflowEncoder(new RawEncoder(MecanumDrive.this.rightBack))));
+            rightFront = estimateVelocity(bulkReads.track(new OverflowEncoder(new RawEncoder(MecanumDrive.this.rightFront))));
 
             imu = lazyImu.get();
+            // only yaw is needed here; its rate comes from successive readings
+            imuSampler = new ImuSampler(imu, PARAMS.imuSamplePeriodMs, PARAMS.imuMaxExtrapolationMs, false);
 
             // TODO: reverse encoders if needed
             //   leftFront.setDirection(DcMotorSimple.Direction.REVERSE);
 
             this.pose = pose;
+            integrator = new OdometryKernels.PoseIntegrator(pose);
+            snapshot = PoseSnapshot.initial(pose);
+        }
+
+        private Encoder estimateVelocity(Encoder e) {
+            return VelocityEstimator.wrap(e, PARAMS.velocityWindow, PARAMS.velocityFitOrder);
         }
 
         @Override
         public void setPose(Pose2d pose) {
             this.pose = pose;
+            integrator.set(pose);
+            snapshot = snapshot.next(pose, snapshot.velocity);
         }
 
         @Override
@@ -152,19 +232,26 @@ public final class MecanumDrive {
             return pose;
         }
 
+        @Override
+        public PoseSnapshot getSnapshot() {
+            return snapshot;
+        }
+
         @Override
         public PoseVelocity2d update() {
+            long encoderTimestamp = System.nanoTime();
             PositionVelocityPair leftFrontPosVel = leftFront.getPositionAndVelocity();
             PositionVelocityPair leftBackPosVel = leftBack.getPositionAndVelocity();
             PositionVelocityPair rightBackPosVel = rightBack.getPositionAndVelocity();
             PositionVelocityPair rightFrontPosVel = rightFront.getPositionAndVelocity();
 
-            YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
+            // the sampler polls the IMU in the background; bring its newest reading up to the encoders
+            ImuSampler.Sample imuSample = imuSampler.getSample();
 
-            FlightRecorder.write("MECANUM_LOCALIZER_INPUTS", new MecanumLocalizerInputsMessage(
-                    leftFrontPosVel, leftBackPosVel, rightBackPosVel, rightFrontPosVel, angles));
+            FlightRecorder.write("MECANUM_LOCALIZER_INPUTS", inputsMessage.set(
+                    leftFrontPosVel, leftBackPosVel, rightBackPosVel, rightFrontPosVel, imuSample.angles));
 
-            Rotation2d heading = Rotation2d.exp(angles.getYaw(AngleUnit.RADIANS));
+            double heading = imuSampler.yawAt(imuSample, encoderTimestamp);
 
             if (!initialized) {
                 initialized = true;
@@ -176,28 +263,22 @@ public final class MecanumDrive {
 
                 lastHeading = heading;
 
-                return new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0);
+                PoseVelocity2d vel = new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0);
+                snapshot = snapshot.next(pose, vel);
+                return vel;
             }
 
-            double headingDelta = heading.minus(lastHeading);
-            Twist2dDual<Time> twist = kinematics.forward(new MecanumKinematics.WheelIncrements<>(
-                    new DualNum<Time>(new double[]{
-                            (leftFrontPosVel.position - lastLeftFrontPos),
-                            leftFrontPosVel.velocity,
-                    }).times(PARAMS.inPerTick),
-                    new DualNum<Time>(new double[]{
-                            (leftBackPosVel.position - lastLeftBackPos),
-                            leftBackPosVel.velocity,
-                    }).times(PARAMS.inPerTick),
-                    new DualNum<Time>(new double[]{
-                            (rightBackPosVel.position - lastRightBackPos),
-                            rightBackPosVel.velocity,
-                    }).times(PARAMS.inPerTick),
-                    new DualNum<Time>(new double[]{
-                            (rightFrontPosVel.position - lastRightFrontPos),
-                            rightFrontPosVel.velocity,
-                    }).times(PARAMS.inPerTick)
-            ));
+            double headingDelta = heading - lastHeading;
+            odometry.compute(
+                    leftFrontPosVel.position - lastLeftFrontPos,
+                    leftBackPosVel.position - lastLeftBackPos,
+                    rightBackPosVel.position - lastRightBackPos,
+                    rightFrontPosVel.position - lastRightFrontPos,
+                    leftFrontPosVel.velocity,
+                    leftBackPosVel.velocity,
+                    rightBackPosVel.velocity,
+                    rightFrontPosVel.velocity,
+                    odometryOutput);
 
             lastLeftFrontPos = leftFrontPosVel.position;
             lastLeftBackPos = leftBackPosVel.position;
@@ -206,21 +287,20 @@ public final class MecanumDrive {
 
             lastHeading = heading;
 
-            pose = pose.plus(new Twist2d(
-                    twist.line.value(),
-                    headingDelta
-            ));
+            // translation from the wheels, rotation from the IMU
+            integrator.integrate(odometryOutput.dx, odometryOutput.dy, headingDelta);
+            pose = integrator.toPose();
 
-            return twist.velocity().value();
+            PoseVelocity2d vel = odometryOutput.velocity();
+            snapshot = snapshot.next(pose, vel);
+            return vel;
         }
     }
 
     public MecanumDrive(HardwareMap hardwareMap, Pose2d pose) {
         LynxFirmware.throwIfModulesAreOutdated(hardwareMap);
 
-        for (LynxModule module : hardwareMap.getAll(LynxModule.class)) {
-            module.setBulkCachingMode(LynxModule.BulkCachingMode.AUTO);
-        }
+        bulkReads = new BulkReadManager(hardwareMap.getAll(LynxModule.class));
 
         // TODO: make sure your config has motors with these names (or change them)
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
@@ -237,15 +317,32 @@ public final class MecanumDrive {
         // TODO: reverse motor directions if needed
         //   leftFront.setDirection(DcMotorSimple.Direction.REVERSE);
 
+        motorPowers = new MotorPowerCache(Arrays.asList(leftFront, leftBack, rightBack, rightFront));
+
         // TODO: make sure your config has an IMU with this name (can be BNO or BHI)
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
         lazyImu = new LazyImu(hardwareMap, "imu", new RevHubOrientationOnRobot(
                 PARAMS.logoFacingDirection, PARAMS.usbFacingDirection));
 
         voltageSensor = hardwareMap.voltageSensor.iterator().next();
+        voltageSampler = new VoltageSampler(voltageSensor,
+                PARAMS.voltageSamplePeriodMs, PARAMS.voltageFilterTimeConstant);
 
+        // TODO: to integrate dead wheels on their own thread, pass the bulk read manager along
+        //   localizer = new ThreeDeadWheelLocalizer(hardwareMap, PARAMS.inPerTick, pose, bulkReads);
         localizer = new DriveLocalizer(pose);
 
+        // the wheels can only be checked against a localizer that doesn't use them
+        if (SlipMonitor.PARAMS.enabled && !(localizer instanceof DriveLocalizer)) {
+            slipCheck = new SlipCheck();
+            slipMonitor = slipCheck.monitor;
+        } else {
+            slipCheck = null;
+            slipMonitor = null;
+        }
+
+        follower = new MecanumFollower(kinematics, profiler, slipMonitor);
+
         FlightRecorder.write("MECANUM_PARAMS", PARAMS);
     }
 
@@ -258,31 +355,74 @@ public final class MecanumDrive {
             maxPowerMag = Math.max(maxPowerMag, power.value());
         }
 
-        leftFront.setPower(wheelVels.leftFront.get(0) / maxPowerMag);
-        leftBack.setPower(wheelVels.leftBack.get(0) / maxPowerMag);
-        rightBack.setPower(wheelVels.rightBack.get(0) / maxPowerMag);
-        rightFront.setPower(wheelVels.rightFront.get(0) / maxPowerMag);
+        setMotorPowers(
+                wheelVels.leftFront.get(0) / maxPowerMag,
+                wheelVels.leftBack.get(0) / maxPowerMag,
+                wheelVels.rightBack.get(0) / maxPowerMag,
+                wheelVels.rightFront.get(0) / maxPowerMag);
+    }
+
+    private void setMotorPowers(double leftFrontPower, double leftBackPower,
+                                double rightBackPower, double rightFrontPower) {
+        motorPowers.setPower(0, leftFrontPower, PARAMS.powerDeadband);
+        motorPowers.setPower(1, leftBackPower, PARAMS.powerDeadband);
+        motorPowers.setPower(2, rightBackPower, PARAMS.powerDeadband);
+        motorPowers.setPower(3, rightFrontPower, PARAMS.powerDeadband);
+    }
+
+    /**
+     * Runs the drive encoders through the mecanum kinematics next to a localizer that doesn't use
+     * them and feeds both velocities to a {@link SlipMonitor}. The hub reports the wheel velocities
+     * in the same bulk read as the positions, so this costs no extra hub transactions.
+     */
+    private final class SlipCheck {
+        final Encoder leftFront, leftBack, rightBack, rightFront;
+        final SlipMonitor monitor = new SlipMonitor();
+
+        private final OdometryKernels.Mecanum wheels = new OdometryKernels.Mecanum(
+                PARAMS.inPerTick, kinematics.trackWidth, kinematics.lateralMultiplier);
+        private final OdometryKernels.Output wheelOutput = new OdometryKernels.Output();
+
+        SlipCheck() {
+            leftFront = bulkReads.track(new OverflowEncoder(new RawEncoder(MecanumDrive.this.leftFront)));
+            leftBack = bulkReads.track(new OverflowEncoder(new RawEncoder(MecanumDrive.this.leftBack)));
+            rightBack = bulkReads.track(new OverflowEncoder(new RawEncoder(MecanumDrive.this.rightBack)));
+            rightFront = bulkReads.track(new OverflowEncoder(new RawEncoder(MecanumDrive.this.rightFront)));
+
+            // TODO: reverse encoders the same way as in DriveLocalizer
+            //   leftFront.setDirection(DcMotorSimple.Direction.REVERSE);
+        }
+
+        void update(PoseVelocity2d localizerVel) {
+            wheels.compute(0, 0, 0, 0,
+                    leftFront.getPositionAndVelocity().velocity,
+                    leftBack.getPositionAndVelocity().velocity,
+                    rightBack.getPositionAndVelocity().velocity,
+                    rightFront.getPositionAndVelocity().velocity,
+                    wheelOutput);
+            monitor.update(System.nanoTime(), wheelOutput.velX, wheelOutput.velY, wheelOutput.velHeading,
+                    localizerVel);
+        }
     }
 
     public final class FollowTrajectoryAction implements Action {
-        public final TimeTrajectory timeTrajectory;
+        public final TimeTrajectory timeTrajectory; // null when loaded from the trajectory cache
+        public final CompiledTrajectory compiledTrajectory;
         private double beginTs = -1;
 
         private final double[] xPoints, yPoints;
 
         public FollowTrajectoryAction(TimeTrajectory t) {
-            timeTrajectory = t;
-
-            List<Double> disps = com.acmerobotics.roadrunner.Math.range(
-                    0, t.path.length(),
-                    Math.max(2, (int) Math.ceil(t.path.length() / 2)));
-            xPoints = new double[disps.size()];
-            yPoints = new double[disps.size()];
-            for (int i = 0; i < disps.size(); i++) {
-                Pose2d p = t.path.get(disps.get(i), 1).value();
-                xPoints[i] = p.position.x;
-                yPoints[i] = p.position.y;
-            }
+            this(new CompiledTrajectory(t, PARAMS.trajectoryResolution));
+        }
+
+        public FollowTrajectoryAction(CompiledTrajectory t) {
+            timeTrajectory = t.timeTrajectory;
+            compiledTrajectory = t;
+
+            double[][] polyline = t.polyline(2);
+            xPoints = polyline[0];
+            yPoints = polyline[1];
         }
 
         @Override
@@ -290,65 +430,53 @@ public final class MecanumDrive {
             double t;
             if (beginTs < 0) {
                 beginTs = Actions.now();
+                follower.begin(beginTs);
                 t = 0;
             } else {
-                t = Actions.now() - beginTs;
+                // runs slower than real time while the wheels slip
+                t = follower.advance(Actions.now());
             }
 
-            if (t >= timeTrajectory.duration) {
-                leftFront.setPower(0);
-                leftBack.setPower(0);
-                rightBack.setPower(0);
-                rightFront.setPower(0);
+            if (t >= compiledTrajectory.duration) {
+                setMotorPowers(0, 0, 0, 0);
 
                 return false;
             }
 
-            Pose2dDual<Time> txWorldTarget = timeTrajectory.get(t);
-            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+            profiler.start();
 
             PoseVelocity2d robotVelRobot = updatePoseEstimate();
 
-            PoseVelocity2dDual<Time> command = new HolonomicController(
-                    PARAMS.axialGain, PARAMS.lateralGain, PARAMS.headingGain,
-                    PARAMS.axialVelGain, PARAMS.lateralVelGain, PARAMS.headingVelGain
-            )
-                    .compute(txWorldTarget, localizer.getPose(), robotVelRobot);
-            driveCommandWriter.write(new DriveCommandMessage(command));
-
-            MecanumKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
-
-            final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
-                    PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
-            double leftFrontPower = feedforward.compute(wheelVels.leftFront) / voltage;
-            double leftBackPower = feedforward.compute(wheelVels.leftBack) / voltage;
-            double rightBackPower = feedforward.compute(wheelVels.rightBack) / voltage;
-            double rightFrontPower = feedforward.compute(wheelVels.rightFront) / voltage;
-            mecanumCommandWriter.write(new MecanumCommandMessage(
-                    voltage, leftFrontPower, leftBackPower, rightBackPower, rightFrontPower
-            ));
+            compiledTrajectory.sample(t, follower.target);
+            double voltage = voltageSampler.getVoltage();
 
-            leftFront.setPower(leftFrontPower);
-            leftBack.setPower(leftBackPower);
-            rightBack.setPower(rightBackPower);
-            rightFront.setPower(rightFrontPower);
+            follower.compute(localizer.getPose(), robotVelRobot, voltage);
+            writeFollowerCommand(voltage);
 
             p.put("x", localizer.getPose().position.x);
             p.put("y", localizer.getPose().position.y);
             p.put("heading (deg)", Math.toDegrees(localizer.getPose().heading.toDouble()));
 
-            Pose2d error = txWorldTarget.value().minusExp(localizer.getPose());
-            p.put("xError", error.position.x);
-            p.put("yError", error.position.y);
-            p.put("headingError (deg)", Math.toDegrees(error.heading.toDouble()));
+            // error in the robot frame, as computed by the follower
+            p.put("xError", follower.errorX);
+            p.put("yError", follower.errorY);
+            p.put("headingError (deg)", Math.toDegrees(follower.errorHeading));
+
+            p.put("suppressed motor writes", motorPowers.getSuppressedWrites());
+            p.put("duplicate encoder reads", bulkReads.getDuplicateReads());
+            p.put("out of phase encoder reads", bulkReads.getOutOfPhaseReads());
+            p.put("target interpolation error (in)", compiledTrajectory.maxPositionError);
+            if (slipMonitor != null) {
+                p.put("slipping", slipMonitor.isSlipping());
+                p.put("slip speed error (in/s)", slipMonitor.getSpeedError());
+            }
 
             // only draw when active; only one drive action should be active at a time
             Canvas c = p.fieldOverlay();
             drawPoseHistory(c);
 
             c.setStroke("#4CAF50");
-            Drawing.drawRobot(c, txWorldTarget.value());
+            drawTarget(c);
 
             c.setStroke("#3F51B5");
             Drawing.drawRobot(c, localizer.getPose());
@@ -357,6 +485,9 @@ public final class MecanumDrive {
             c.setStrokeWidth(1);
             c.strokePolyline(xPoints, yPoints);
 
+            profiler.mark(LoopProfiler.Phase.DASHBOARD);
+            profiler.end(p);
+
             return true;
         }
 
@@ -369,12 +500,14 @@ public final class MecanumDrive {
     }
 
     public final class TurnAction implements Action {
-        private final TimeTurn turn;
+        public final TimeTurn turn;
+        public final CompiledTurn compiledTurn;
 
         private double beginTs = -1;
 
         public TurnAction(TimeTurn turn) {
             this.turn = turn;
+            compiledTurn = new CompiledTurn(turn, PARAMS.trajectoryResolution);
         }
 
         @Override
@@ -382,54 +515,34 @@ public final class MecanumDrive {
             double t;
             if (beginTs < 0) {
                 beginTs = Actions.now();
+                follower.begin(beginTs);
                 t = 0;
             } else {
-                t = Actions.now() - beginTs;
+                // runs slower than real time while the wheels slip
+                t = follower.advance(Actions.now());
             }
 
             if (t >= turn.duration) {
-                leftFront.setPower(0);
-                leftBack.setPower(0);
-                rightBack.setPower(0);
-                rightFront.setPower(0);
+                setMotorPowers(0, 0, 0, 0);
 
                 return false;
             }
 
-            Pose2dDual<Time> txWorldTarget = turn.get(t);
-            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+            profiler.start();
 
             PoseVelocity2d robotVelRobot = updatePoseEstimate();
 
-            PoseVelocity2dDual<Time> command = new HolonomicController(
-                    PARAMS.axialGain, PARAMS.lateralGain, PARAMS.headingGain,
-                    PARAMS.axialVelGain, PARAMS.lateralVelGain, PARAMS.headingVelGain
-            )
-                    .compute(txWorldTarget, localizer.getPose(), robotVelRobot);
-            driveCommandWriter.write(new DriveCommandMessage(command));
-
-            MecanumKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
-            final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
-                    PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
-            double leftFrontPower = feedforward.compute(wheelVels.leftFront) / voltage;
-            double leftBackPower = feedforward.compute(wheelVels.leftBack) / voltage;
-            double rightBackPower = feedforward.compute(wheelVels.rightBack) / voltage;
-            double rightFrontPower = feedforward.compute(wheelVels.rightFront) / voltage;
-            mecanumCommandWriter.write(new MecanumCommandMessage(
-                    voltage, leftFrontPower, leftBackPower, rightBackPower, rightFrontPower
-            ));
+            compiledTurn.sample(t, follower.target);
+            double voltage = voltageSampler.getVoltage();
 
-            leftFront.setPower(feedforward.compute(wheelVels.leftFront) / voltage);
-            leftBack.setPower(feedforward.compute(wheelVels.leftBack) / voltage);
-            rightBack.setPower(feedforward.compute(wheelVels.rightBack) / voltage);
-            rightFront.setPower(feedforward.compute(wheelVels.rightFront) / voltage);
+            follower.compute(localizer.getPose(), robotVelRobot, voltage);
+            writeFollowerCommand(voltage);
 
             Canvas c = p.fieldOverlay();
             drawPoseHistory(c);
 
             c.setStroke("#4CAF50");
-            Drawing.drawRobot(c, txWorldTarget.value());
+            drawTarget(c);
 
             c.setStroke("#3F51B5");
             Drawing.drawRobot(c, localizer.getPose());
@@ -437,6 +550,9 @@ public final class MecanumDrive {
             c.setStroke("#7C4DFFFF");
             c.fillCircle(turn.beginPose.position.x, turn.beginPose.position.y, 2);
 
+            profiler.mark(LoopProfiler.Phase.DASHBOARD);
+            profiler.end(p);
+
             return true;
         }
 
@@ -447,48 +563,100 @@ public final class MecanumDrive {
         }
     }
 
+    private void writeFollowerCommand(double voltage) {
+        targetPoseWriter.write(targetPoseMessage.set(
+                follower.target[0], follower.target[1], follower.target[2]));
+        driveCommandWriter.write(driveCommandMessage.set(
+                follower.forwardVel, follower.forwardAccel,
+                follower.lateralVel, follower.lateralAccel,
+                follower.angVel, follower.angAccel));
+        mecanumCommandWriter.write(mecanumCommandMessage.set(voltage,
+                follower.leftFrontPower, follower.leftBackPower,
+                follower.rightBackPower, follower.rightFrontPower));
+
+        setMotorPowers(follower.leftFrontPower, follower.leftBackPower,
+                follower.rightBackPower, follower.rightFrontPower);
+        profiler.mark(LoopProfiler.Phase.MOTOR_WRITE);
+    }
+
     public PoseVelocity2d updatePoseEstimate() {
+        // the pose estimate is the first read of every control cycle
+        bulkReads.beginCycle();
+        profiler.mark(LoopProfiler.Phase.SENSOR_READ);
+
         PoseVelocity2d vel = localizer.update();
-        poseHistory.add(localizer.getPose());
-        
-        while (poseHistory.size() > 100) {
-            poseHistory.removeFirst();
+        if (slipCheck != null) {
+            slipCheck.update(vel);
         }
+        bulkReads.endReadPhase();
+        poseHistory.add(System.nanoTime(), localizer.getPose());
 
-        estimatedPoseWriter.write(new PoseMessage(localizer.getPose()));
+        estimatedPoseWriter.write(estimatedPoseMessage.set(localizer.getPose()));
+        profiler.mark(LoopProfiler.Phase.LOCALIZER);
         
         
         return vel;
     }
 
-    private void drawPoseHistory(Canvas c) {
-        double[] xPoints = new double[poseHistory.size()];
-        double[] yPoints = new double[poseHistory.size()];
-
-        int i = 0;
-        for (Pose2d t : poseHistory) {
-            xPoints[i] = t.position.x;
-            yPoints[i] = t.position.y;
+    private void drawTarget(Canvas c) {
+        Drawing.drawRobot(c, follower.target[CompiledTrajectory.X], follower.target[CompiledTrajectory.Y],
+                follower.target[CompiledTrajectory.HEADING]);
+    }
 
-            i++;
-        }
+    private void drawPoseHistory(Canvas c) {
+        poseHistory.exportPolyline(poseHistoryXPoints, poseHistoryYPoints);
 
         c.setStrokeWidth(1);
         c.setStroke("#3F51B5");
-        c.strokePolyline(xPoints, yPoints);
+        c.strokePolyline(poseHistoryXPoints, poseHistoryYPoints);
+    }
+
+    /**
+     * Creates a thread that runs this drive at a fixed rate; see DriveControlThread.
+     */
+    public DriveControlThread controlThread() {
+        return new DriveControlThread(
+                this::updatePoseEstimate,
+                localizer,
+                () -> setDrivePowers(new PoseVelocity2d(new Vector2d(0, 0), 0)),
+                PARAMS.controlPeriodMs,
+                PARAMS.controlHeartbeatTimeoutMs
+        );
     }
 
     public TrajectoryActionBuilder actionBuilder(Pose2d beginPose) {
-        return new TrajectoryActionBuilder(
+        return actionBuilder(beginPose, TurnAction::new, FollowTrajectoryAction::new);
+    }
+
+    /**
+     * Like actionBuilder(), but the built trajectories are cached on disk and reused by later
+     * inits as long as the builder calls, begin pose and drive constraints are unchanged.
+     */
+    public CachedActionBuilder cachedActionBuilder(Pose2d beginPose) {
+        return new CachedActionBuilder(
+                this::actionBuilder,
                 TurnAction::new,
                 FollowTrajectoryAction::new,
+                defaultTurnConstraints,
+                PARAMS.trajectoryResolution,
+                constraintKey,
+                beginPose
+        );
+    }
+
+    private TrajectoryActionBuilder actionBuilder(Pose2d beginPose,
+                                                 TurnActionFactory turnFactory,
+                                                 TrajectoryActionFactory trajectoryFactory) {
+        return new TrajectoryActionBuilder(
+                turnFactory,
+                trajectoryFactory,
                 new TrajectoryBuilderParams(
-                        1e-6,
+                        ARC_LENGTH_SAMPLING_EPS,
                         new ProfileParams(
-                                0.25, 0.1, 1e-2
+                                PROFILE_DISP_RESOLUTION, PROFILE_ANGULAR_RESOLUTION, PROFILE_ANGLE_SAMPLING_EPS
                         )
                 ),
-                beginPose, 0.0,
+                beginPose, BEGIN_END_VEL,
                 defaultTurnConstraints,
                 defaultVelConstraint, defaultAccelConstraint
         );
@@ -0,0 +1,152 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.MecanumKinematics;
+import com.acmerobotics.roadrunner.MotorFeedforward;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+
+/**
+ * Allocation-free equivalent of HolonomicController, MecanumKinematics.inverse() and
+ * MotorFeedforward shared by the MecanumDrive actions. Only one drive action runs at a time, so a
+ * single instance holds the scratch state for both. Gains and feedforward come from
+ * {@link MecanumDrive#PARAMS}.
+ * <p>
+ * While the {@link SlipMonitor} reports slip, the follower runs the trajectory clock at
+ * sqrt(accelScale) of real time. The target then moves slower, the velocity feedforward scales
+ * with the clock rate and the acceleration feedforward with its square, so the feedback doesn't
+ * fight a target that runs away from the slipping robot. The clock speeds back up as the monitor
+ * recovers over its recoveryTime.
+ */
+final class MecanumFollower {
+    // target sample in the world frame, indexed like a CompiledTrajectory row
+    final double[] target = new double[CompiledTrajectory.STRIDE];
+
+    // tracking error in the robot frame
+    double errorX, errorY, errorHeading;
+
+    // drive command in the robot frame
+    double forwardVel, forwardAccel, lateralVel, lateralAccel, angVel, angAccel;
+
+    double leftFrontPower, leftBackPower, rightBackPower, rightFrontPower;
+
+    // trajectory clock
+    double timeScale = 1.0; // trajectory seconds per real second
+    private double t, lastNow;
+
+    private final MecanumKinematics kinematics;
+    private final LoopProfiler profiler;
+    private final SlipMonitor slipMonitor; // null if slip isn't checked
+
+    private MotorFeedforward feedforward;
+    private double kS = Double.NaN, kV = Double.NaN, kA = Double.NaN, inPerTick = Double.NaN;
+
+    MecanumFollower(MecanumKinematics kinematics, LoopProfiler profiler, SlipMonitor slipMonitor) {
+        this.kinematics = kinematics;
+        this.profiler = profiler;
+        this.slipMonitor = slipMonitor;
+    }
+
+    /**
+     * Starts the trajectory clock at 0.
+     * @param now current time in seconds
+     */
+    void begin(double now) {
+        t = 0.0;
+        lastNow = now;
+        timeScale = 1.0;
+    }
+
+    /**
+     * Advances the trajectory clock to now, slowed while the wheels slip.
+     * @return trajectory time to sample the target at
+     */
+    double advance(double now) {
+        double accelScale = slipMonitor == null ? 1.0 : slipMonitor.getAccelScale();
+        timeScale = Math.sqrt(accelScale);
+        t += timeScale * (now - lastNow);
+        lastNow = now;
+        return t;
+    }
+
+    // rebuilt only when the feedforward PARAMS change (e.g., from the dashboard)
+    private MotorFeedforward feedforward() {
+        MecanumDrive.Params params = MecanumDrive.PARAMS;
+        if (feedforward == null || kS != params.kS || kV != params.kV || kA != params.kA
+                || inPerTick != params.inPerTick) {
+            kS = params.kS;
+            kV = params.kV;
+            kA = params.kA;
+            inPerTick = params.inPerTick;
+            feedforward = new MotorFeedforward(kS, kV / inPerTick, kA / inPerTick);
+        }
+        return feedforward;
+    }
+
+    /**
+     * Computes the wheel powers that drive the robot toward {@link #target}.
+     */
+    void compute(Pose2d txWorldRobot, PoseVelocity2d robotVelRobot, double voltage) {
+        MecanumDrive.Params params = MecanumDrive.PARAMS;
+
+        double targetCos = Math.cos(target[CompiledTrajectory.HEADING]);
+        double targetSin = Math.sin(target[CompiledTrajectory.HEADING]);
+
+        // target velocity and acceleration rotated into the target frame and scaled to real time
+        double velScale = timeScale, accelScale = timeScale * timeScale;
+        double targetVelX = velScale
+                * (targetCos * target[CompiledTrajectory.VEL_X] + targetSin * target[CompiledTrajectory.VEL_Y]);
+        double targetVelY = velScale
+                * (-targetSin * target[CompiledTrajectory.VEL_X] + targetCos * target[CompiledTrajectory.VEL_Y]);
+        double targetAngVel = velScale * target[CompiledTrajectory.ANG_VEL];
+        // the target frame rotates too, which adds -angVel x vel (the derivative HolonomicController's
+        // dual numbers carry)
+        double targetAccelX = accelScale
+                * (targetCos * target[CompiledTrajectory.ACCEL_X] + targetSin * target[CompiledTrajectory.ACCEL_Y])
+                + targetAngVel * targetVelY;
+        double targetAccelY = accelScale
+                * (-targetSin * target[CompiledTrajectory.ACCEL_X] + targetCos * target[CompiledTrajectory.ACCEL_Y])
+                - targetAngVel * targetVelX;
+
+        // txWorldTarget.minusExp(txWorldRobot)
+        double robotCos = txWorldRobot.heading.real;
+        double robotSin = txWorldRobot.heading.imag;
+        double dx = target[CompiledTrajectory.X] - txWorldRobot.position.x;
+        double dy = target[CompiledTrajectory.Y] - txWorldRobot.position.y;
+        errorX = robotCos * dx + robotSin * dy;
+        errorY = -robotSin * dx + robotCos * dy;
+        errorHeading = Math.atan2(
+                robotCos * targetSin - robotSin * targetCos,
+                robotCos * targetCos + robotSin * targetSin);
+
+        forwardVel = targetVelX
+                + params.axialGain * errorX
+                + params.axialVelGain * (targetVelX - robotVelRobot.linearVel.x);
+        lateralVel = targetVelY
+                + params.lateralGain * errorY
+                + params.lateralVelGain * (targetVelY - robotVelRobot.linearVel.y);
+        angVel = targetAngVel
+                + params.headingGain * errorHeading
+                + params.headingVelGain * (targetAngVel - robotVelRobot.angVel);
+        forwardAccel = targetAccelX;
+        lateralAccel = targetAccelY;
+        angAccel = accelScale * target[CompiledTrajectory.ANG_ACCEL];
+        profiler.mark(LoopProfiler.Phase.CONTROLLER);
+
+        double lateralMultiplier = kinematics.lateralMultiplier;
+        double trackWidth = kinematics.trackWidth;
+        MotorFeedforward feedforward = feedforward();
+        leftFrontPower = feedforward.compute(
+                forwardVel - lateralMultiplier * lateralVel - trackWidth * angVel,
+                forwardAccel - lateralMultiplier * lateralAccel - trackWidth * angAccel) / voltage;
+        leftBackPower = feedforward.compute(
+                forwardVel + lateralMultiplier * lateralVel - trackWidth * angVel,
+                forwardAccel + lateralMultiplier * lateralAccel - trackWidth * angAccel) / voltage;
+        rightBackPower = feedforward.compute(
+                forwardVel - lateralMultiplier * lateralVel + trackWidth * angVel,
+                forwardAccel - lateralMultiplier * lateralAccel + trackWidth * angAccel) / voltage;
+        rightFrontPower = feedforward.compute(
+                forwardVel + lateralMultiplier * lateralVel + trackWidth * angVel,
+                forwardAccel + lateralMultiplier * lateralAccel + trackWidth * angAccel) / voltage;
+        profiler.mark(LoopProfiler.Phase.FEEDFORWARD);
+    }
+}
@@ -0,0 +1,72 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+
+import java.util.List;
+
+/**
+ * Remembers the last power commanded to each motor and skips writes that land inside the deadband.
+ * Every setPower() is its own Lynx transaction, so dropping near-duplicate writes shortens the loop.
+ * Writes to zero and writes that flip the sign of the power always go through.
+ */
+public final class MotorPowerCache {
+    private final DcMotorEx[] motors;
+    private final double[] lastPowers;
+
+    private long writes, suppressedWrites;
+
+    public MotorPowerCache(List<DcMotorEx> motors) {
+        this.motors = motors.toArray(new DcMotorEx[0]);
+        lastPowers = new double[this.motors.length];
+
+        invalidate();
+    }
+
+    /**
+     * Writes power to the motor at index unless it is within deadband of the last written power.
+     * @return true if the write reached the hardware
+     */
+    public boolean setPower(int index, double power, double deadband) {
+        double lastPower = lastPowers[index];
+        if (!Double.isNaN(lastPower)
+                && (power != 0 || lastPower == 0)
+                && Math.signum(power) == Math.signum(lastPower)
+                && Math.abs(power - lastPower) <= deadband) {
+            suppressedWrites++;
+            return false;
+        }
+
+        motors[index].setPower(power);
+        lastPowers[index] = power;
+        writes++;
+        return true;
+    }
+
+    /**
+     * Forgets the cached powers so the next write to each motor goes through. Call this after
+     * anything writes to the motors without going through the cache.
+     */
+    public void invalidate() {
+        for (int i = 0; i < lastPowers.length; i++) {
+            lastPowers[i] = Double.NaN;
+        }
+    }
+
+    public int size() {
+        return motors.length;
+    }
+
+    /**
+     * @return the number of writes that reached the hardware
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * @return the number of writes skipped because they were inside the deadband
+     */
+    public long getSuppressedWrites() {
+        return suppressedWrites;
+    }
+}
@@ -0,0 +1,212 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.MecanumKinematics;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.TankKinematics;
+import com.acmerobotics.roadrunner.Twist2d;
+import com.acmerobotics.roadrunner.Vector2d;
+
+/**
+ * Forward kinematics for each odometry layout on plain doubles. The coefficients, including the
+ * tick-to-inch conversion and any divisions, are worked out once at construction, and each kernel
+ * writes the robot-frame twist and velocity into a reusable {@link Output} instead of building
+ * {@link DualNum}s. {@link PoseIntegrator} then applies twists to a pose the same way
+ * {@link Pose2d#plus(Twist2d)} does, also without allocating.
+ */
+public final class OdometryKernels {
+    private OdometryKernels() {
+    }
+
+    /**
+     * Robot-frame twist since the last update and robot-frame velocity.
+     */
+    public static final class Output {
+        public double dx, dy, dheading;
+        public double velX, velY, velHeading;
+
+        public PoseVelocity2d velocity() {
+            return new PoseVelocity2d(new Vector2d(velX, velY), velHeading);
+        }
+    }
+
+    public static final class Mecanum {
+        private final double kForward, kLateral, kHeading;
+
+        /**
+         * @param trackWidth track width in inches, as in {@link MecanumKinematics}
+         */
+        public Mecanum(double inPerTick, double trackWidth, double lateralMultiplier) {
+            kForward = 0.25 * inPerTick;
+            kLateral = 0.25 * inPerTick / lateralMultiplier;
+            kHeading = 0.25 * inPerTick / trackWidth;
+        }
+
+        /**
+         * Wheel arguments are position deltas and velocities in ticks, in the order left front,
+         * left back, right back, right front.
+         */
+        public void compute(double lfDelta, double lbDelta, double rbDelta, double rfDelta,
+                            double lfVel, double lbVel, double rbVel, double rfVel, Output out) {
+            out.dx = kForward * (lfDelta + lbDelta + rbDelta + rfDelta);
+            out.dy = kLateral * (-lfDelta + lbDelta - rbDelta + rfDelta);
+            out.dheading = kHeading * (-lfDelta - lbDelta + rbDelta + rfDelta);
+
+            out.velX = kForward * (lfVel + lbVel + rbVel + rfVel);
+            out.velY = kLateral * (-lfVel + lbVel - rbVel + rfVel);
+            out.velHeading = kHeading * (-lfVel - lbVel + rbVel + rfVel);
+        }
+    }
+
+    public static final class Tank {
+        private final double kForward, kHeading;
+
+        /**
+         * @param trackWidth track width in inches, as in {@link TankKinematics}
+         */
+        public Tank(double inPerTick, double trackWidth) {
+            kForward = 0.5 * inPerTick;
+            kHeading = inPerTick / trackWidth;
+        }
+
+        /**
+         * Side arguments are position deltas and velocities in ticks.
+         */
+        public void compute(double leftDelta, double rightDelta, double leftVel, double rightVel, Output out) {
+            out.dx = kForward * (leftDelta + rightDelta);
+            out.dy = 0.0;
+            out.dheading = kHeading * (rightDelta - leftDelta);
+
+            out.velX = kForward * (leftVel + rightVel);
+            out.velY = 0.0;
+            out.velHeading = kHeading * (rightVel - leftVel);
+        }
+    }
+
+    public static final class TwoDeadWheel {
+        private final double inPerTick, parYTicks, perpXTicks;
+
+        public TwoDeadWheel(double inPerTick, double parYTicks, double perpXTicks) {
+            this.inPerTick = inPerTick;
+            this.parYTicks = parYTicks;
+            this.perpXTicks = perpXTicks;
+        }
+
+        /**
+         * @return whether this kernel was built from the given parameters
+         */
+        public boolean matches(double inPerTick, double parYTicks, double perpXTicks) {
+            return this.inPerTick == inPerTick && this.parYTicks == parYTicks && this.perpXTicks == perpXTicks;
+        }
+
+        /**
+         * Encoder arguments are in ticks; heading arguments are in radians.
+         */
+        public void compute(double parDelta, double perpDelta, double headingDelta,
+                            double parVel, double perpVel, double headingVel, Output out) {
+            out.dx = inPerTick * (parDelta - parYTicks * headingDelta);
+            out.dy = inPerTick * (perpDelta - perpXTicks * headingDelta);
+            out.dheading = headingDelta;
+
+            out.velX = inPerTick * (parVel - parYTicks * headingVel);
+            out.velY = inPerTick * (perpVel - perpXTicks * headingVel);
+            out.velHeading = headingVel;
+        }
+    }
+
+    public static final class ThreeDeadWheel {
+        private final double inPerTick, par0YTicks, par1YTicks, perpXTicks;
+        private final double kPar0, kPar1, kPerpFromPar, kPerp, kHeading;
+
+        public ThreeDeadWheel(double inPerTick, double par0YTicks, double par1YTicks, double perpXTicks) {
+            this.inPerTick = inPerTick;
+            this.par0YTicks = par0YTicks;
+            this.par1YTicks = par1YTicks;
+            this.perpXTicks = perpXTicks;
+
+            double invSpacing = 1.0 / (par0YTicks - par1YTicks);
+            kPar0 = -par1YTicks * invSpacing * inPerTick;
+            kPar1 = par0YTicks * invSpacing * inPerTick;
+            kPerpFromPar = perpXTicks * invSpacing * inPerTick;
+            kPerp = inPerTick;
+            kHeading = invSpacing;
+        }
+
+        /**
+         * @return whether this kernel was built from the given parameters
+         */
+        public boolean matches(double inPerTick, double par0YTicks, double par1YTicks, double perpXTicks) {
+            return this.inPerTick == inPerTick && this.par0YTicks == par0YTicks
+                    && this.par1YTicks == par1YTicks && this.perpXTicks == perpXTicks;
+        }
+
+        /**
+         * Arguments are position deltas and velocities in ticks.
+         */
+        public void compute(double par0Delta, double par1Delta, double perpDelta,
+                            double par0Vel, double par1Vel, double perpVel, Output out) {
+            out.dx = kPar0 * par0Delta + kPar1 * par1Delta;
+            out.dy = kPerpFromPar * (par1Delta - par0Delta) + kPerp * perpDelta;
+            out.dheading = kHeading * (par0Delta - par1Delta);
+
+            out.velX = kPar0 * par0Vel + kPar1 * par1Vel;
+            out.velY = kPerpFromPar * (par1Vel - par0Vel) + kPerp * perpVel;
+            out.velHeading = kHeading * (par0Vel - par1Vel);
+        }
+    }
+
+    /**
+     * Pose integrated from robot-frame twists with the exact exponential map.
+     */
+    public static final class PoseIntegrator {
+        public double x, y, heading;
+
+        public PoseIntegrator(Pose2d pose) {
+            set(pose);
+        }
+
+        public void set(Pose2d pose) {
+            set(pose.position.x, pose.position.y, pose.heading.toDouble());
+        }
+
+        public void set(double x, double y, double heading) {
+            this.x = x;
+            this.y = y;
+            this.heading = heading;
+        }
+
+        /**
+         * Applies a pose relative to the current one, like {@link Pose2d#times(Pose2d)}.
+         */
+        public void compose(double dx, double dy, double dheading) {
+            double cos = Math.cos(heading), sin = Math.sin(heading);
+            x += cos * dx - sin * dy;
+            y += sin * dx + cos * dy;
+            heading += dheading;
+        }
+
+        public void integrate(double dx, double dy, double dheading) {
+            // translation of the twist's exponential, in the frame at the start of the twist
+            double a, b;
+            if (Math.abs(dheading) < 1e-6) {
+                a = 1.0 - dheading * dheading / 6.0;
+                b = 0.5 * dheading;
+            } else {
+                a = Math.sin(dheading) / dheading;
+                b = (1.0 - Math.cos(dheading)) / dheading;
+            }
+            double localX = a * dx - b * dy;
+            double localY = b * dx + a * dy;
+
+            double cos = Math.cos(heading), sin = Math.sin(heading);
+            x += cos * localX - sin * localY;
+            y += sin * localX + cos * localY;
+            heading += dheading;
+        }
+
+        public Pose2d toPose() {
+            return new Pose2d(x, y, heading);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.PoseVelocity2d;
 import com.acmerobotics.roadrunner.Rotation2d;
 import com.acmerobotics.roadrunner.Vector2d;
+import com.acmerobotics.roadrunner.ftc.FlightRecorder;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
 import java.util.Objects;
@@ -14,34 +15,101 @@ public final class PinpointLocalizer implements Localizer {
     public static class Params {
         public double parYTicks = 0.0; // y position of the parallel encoder (in tick units)
         public double perpXTicks = 0.0; // x position of the perpendicular encoder (in tick units)
+
+        // read scheduling parameters
+        // opt-in: trades accuracy for loop time. When a full read costs more than the budget, some
+        // loops only read heading and report a position extrapolated from the last full read
+        // instead of a measured one; the Pinpoint keeps integrating, so the next full read removes
+        // any extrapolation error
+        public boolean adaptiveReads = false;
+        public double readBudgetMs = 2.0;
+        public int maxConsecutivePartialReads = 3; // when stopped; fewer as the robot speeds up
+        public double maxPartialReadSpeed = 40.0; // in/s; always read everything above this
+
+        // polling parameters
+        // with a nonzero period the driver reads on its own thread and update() extrapolates the
+        // newest read to the present instead of waiting on the bus; adaptive reads are then unused
+        public long pollingPeriodMs = 0;
+        public long maxExtrapolationMs = 50;
+
+        // init parameters
+        // the Pinpoint keeps its pose and IMU calibration while powered, so by default a READY
+        // device is trusted as is; resetting recalibrates the IMU, which takes ~0.25 s with the
+        // robot still
+        public boolean resetPosAndImuOnInit = false;
     }
 
+    private static final double READ_TIME_SMOOTHING = 0.1;
+
     public static Params PARAMS = new Params();
 
     private final GoBildaPinpointDriver driver;
+    public final GoBildaPinpointDriver.ConfigResult configResult;
+    public final boolean resetOnInit;
+    private final boolean polling;
+    private long lastSnapshotAgeNanos;
     private Pose2d txWorldPinpoint;
     private Pose2d txPinpointRobot = new Pose2d(0, 0, 0);
+    private volatile PoseSnapshot snapshot;
+
+    // state of the last full read
+    private boolean lastFullReadReady;
+    private long lastFullReadNanos;
+    private double lastPosX, lastPosY, lastVelX, lastVelY; // mm, mm/s
+
+    private int partialStreak;
+    private double fullReadNanos, partialReadNanos; // smoothed read times
+    private long fullReads, partialReads;
+    private double savedNanos;
 
     public PinpointLocalizer(HardwareMap hardwareMap, double inPerTick, Pose2d initialPose) {
         // TODO: make sure your config has a Pinpoint device with this name
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
-        driver = hardwareMap.get(GoBildaPinpointDriver.class, "pinpoint");
+        this(hardwareMap.get(GoBildaPinpointDriver.class, "pinpoint"), inPerTick, initialPose);
+    }
 
+    /**
+     * Uses the given driver, e.g., one on a simulated device in the unit tests.
+     */
+    public PinpointLocalizer(GoBildaPinpointDriver driver, double inPerTick, Pose2d initialPose) {
+        this.driver = driver;
+
+        // only writes what isn't already on the device
         double mmPerTick = 25.4 * inPerTick;
-        driver.setEncoderResolution(1 / mmPerTick);
-        driver.setOffsets(mmPerTick * PARAMS.parYTicks, mmPerTick * PARAMS.perpXTicks);
+        GoBildaPinpointDriver.ConfigResult config = driver.configure(1 / mmPerTick,
+                mmPerTick * PARAMS.parYTicks, mmPerTick * PARAMS.perpXTicks);
 
         // TODO: reverse encoder directions if needed
         //    driver.setEncoderDirections(GoBildaPinpointDriver.EncoderDirection.REVERSED, GoBildaPinpointDriver.EncoderDirection.REVERSED);
 
-        driver.resetPosAndIMU();
+        long statusStart = System.nanoTime();
+        driver.update();
+        double statusReadMs = (System.nanoTime() - statusStart) / 1e6;
+        resetOnInit = PARAMS.resetPosAndImuOnInit
+                || config.registersWritten > 0 // the pose so far was tracked with the old config
+                || driver.getDeviceStatus() != GoBildaPinpointDriver.DeviceStatus.READY;
+        if (resetOnInit) {
+            driver.resetPosAndIMU();
+        } else {
+            // keep the device's pose and map it to the initial pose
+            txPinpointRobot = new Pose2d(driver.getPosX() / 25.4, driver.getPosY() / 25.4, driver.getHeading());
+        }
 
-        txWorldPinpoint = initialPose;
+        // net of the readbacks, counting the skipped reset
+        configResult = config.withReset(statusReadMs, resetOnInit);
+        FlightRecorder.write("PINPOINT_CONFIG", configResult);
+
+        polling = PARAMS.pollingPeriodMs > 0;
+        driver.setPollingPeriod(PARAMS.pollingPeriodMs);
+
+        txWorldPinpoint = initialPose.times(txPinpointRobot.inverse());
+        snapshot = PoseSnapshot.initial(initialPose);
     }
 
     @Override
     public void setPose(Pose2d pose) {
         txWorldPinpoint = pose.times(txPinpointRobot.inverse());
+        snapshot = snapshot.next(pose, snapshot.velocity);
     }
 
     @Override
@@ -49,15 +117,142 @@ public final class PinpointLocalizer implements Localizer {
         return txWorldPinpoint.times(txPinpointRobot);
     }
 
+    @Override
+    public PoseSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     @Override
     public PoseVelocity2d update() {
-        driver.update();
-        if (Objects.requireNonNull(driver.getDeviceStatus()) == GoBildaPinpointDriver.DeviceStatus.READY) {
-            txPinpointRobot = new Pose2d(driver.getPosX() / 25.4, driver.getPosY() / 25.4, driver.getHeading());
-            Vector2d worldVelocity = new Vector2d(driver.getVelX() / 25.4, driver.getVelY() / 25.4);
-            Vector2d robotVelocity = Rotation2d.fromDouble(-driver.getHeading()).times(worldVelocity);
-            return new PoseVelocity2d(robotVelocity, driver.getHeadingVelocity());
+        if (polling) {
+            return updateFromSnapshot();
+        }
+
+        boolean full = needsFullRead();
+
+        long start = System.nanoTime();
+        if (full) {
+            driver.update();
+        } else {
+            driver.update(GoBildaPinpointDriver.readData.ONLY_UPDATE_HEADING);
+        }
+        long end = System.nanoTime();
+        long readTimestamp = start + (end - start) / 2;
+
+        if (full) {
+            fullReadNanos = smooth(fullReadNanos, end - start, fullReads);
+            fullReads++;
+            partialStreak = 0;
+
+            lastFullReadReady = Objects.requireNonNull(driver.getDeviceStatus()) == GoBildaPinpointDriver.DeviceStatus.READY;
+            if (!lastFullReadReady) {
+                return new PoseVelocity2d(new Vector2d(0, 0), 0);
+            }
+
+            lastFullReadNanos = readTimestamp;
+            lastPosX = driver.getPosX();
+            lastPosY = driver.getPosY();
+            lastVelX = driver.getVelX();
+            lastVelY = driver.getVelY();
+
+            txPinpointRobot = new Pose2d(lastPosX / 25.4, lastPosY / 25.4, driver.getHeading());
+        } else {
+            partialReadNanos = smooth(partialReadNanos, end - start, partialReads);
+            partialReads++;
+            partialStreak++;
+            savedNanos += fullReadNanos - (end - start);
+
+            // fresh heading, position extrapolated from the last full read
+            double dt = (readTimestamp - lastFullReadNanos) / 1e9;
+            txPinpointRobot = new Pose2d(
+                    (lastPosX + lastVelX * dt) / 25.4,
+                    (lastPosY + lastVelY * dt) / 25.4,
+                    driver.getHeading());
         }
-        return new PoseVelocity2d(new Vector2d(0, 0), 0);
+
+        Vector2d worldVelocity = new Vector2d(lastVelX / 25.4, lastVelY / 25.4);
+        Vector2d robotVelocity = Rotation2d.fromDouble(-driver.getHeading()).times(worldVelocity);
+        PoseVelocity2d vel = new PoseVelocity2d(robotVelocity, driver.getHeadingVelocity());
+        snapshot = snapshot.next(getPose(), vel);
+        return vel;
+    }
+
+    // brings the poller's newest read up to now
+    private PoseVelocity2d updateFromSnapshot() {
+        GoBildaPinpointDriver.Snapshot s = driver.getSnapshot();
+        // a failed poller leaves a stale snapshot behind; hold the pose until it reads again
+        if (s == null || driver.getPollFailure() != null
+                || s.getDeviceStatus() != GoBildaPinpointDriver.DeviceStatus.READY) {
+            return new PoseVelocity2d(new Vector2d(0, 0), 0);
+        }
+
+        lastSnapshotAgeNanos = System.nanoTime() - s.acquisitionNanos;
+        double dt = Math.min(lastSnapshotAgeNanos, PARAMS.maxExtrapolationMs * 1_000_000L) / 1e9;
+
+        // the Pinpoint reports velocity in its own (world) frame
+        double heading = s.hOrientation + s.hVelocity * dt;
+        txPinpointRobot = new Pose2d(
+                (s.xPosition + s.xVelocity * dt) / 25.4,
+                (s.yPosition + s.yVelocity * dt) / 25.4,
+                heading);
+
+        Vector2d worldVelocity = new Vector2d(s.xVelocity / 25.4, s.yVelocity / 25.4);
+        Vector2d robotVelocity = Rotation2d.fromDouble(-heading).times(worldVelocity);
+        PoseVelocity2d vel = new PoseVelocity2d(robotVelocity, s.hVelocity);
+        snapshot = snapshot.next(getPose(), vel);
+        return vel;
+    }
+
+    /**
+     * @return how old the driver's snapshot was at the last update() when polling, in ms
+     */
+    public double getSnapshotAgeMs() {
+        return lastSnapshotAgeNanos / 1e6;
+    }
+
+    public long getFullReads() {
+        return fullReads;
+    }
+
+    public long getPartialReads() {
+        return partialReads;
+    }
+
+    /**
+     * @return estimated I2C time saved by partial reads, i.e., the smoothed full read time minus
+     * the actual time of each partial read, summed
+     */
+    public double getSavedMs() {
+        return savedNanos / 1e6;
+    }
+
+    public double getFullReadMs() {
+        return fullReadNanos / 1e6;
+    }
+
+    public double getPartialReadMs() {
+        return partialReadNanos / 1e6;
+    }
+
+    private boolean needsFullRead() {
+        if (!PARAMS.adaptiveReads || !lastFullReadReady) {
+            return true;
+        }
+
+        // full reads fit the budget; nothing to save
+        if (fullReadNanos <= PARAMS.readBudgetMs * 1e6) {
+            return true;
+        }
+
+        // extrapolation error grows with speed, so allow fewer partial reads in a row when fast
+        double speed = Math.hypot(lastVelX, lastVelY) / 25.4;
+        int allowedPartials = (int) (PARAMS.maxConsecutivePartialReads
+                * Math.max(0.0, 1.0 - speed / PARAMS.maxPartialReadSpeed));
+        return partialStreak >= allowedPartials;
+    }
+
+    // exponential moving average, seeded with the first value
+    private static double smooth(double average, long value, long count) {
+        return count == 0 ? value : average + READ_TIME_SMOOTHING * (value - average);
     }
 }
@@ -0,0 +1,228 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Extended Kalman filter over a planar pose (x, y, heading). Odometry motion drives the prediction;
+ * heading and full-pose measurements correct it. The covariance and all intermediate matrices are
+ * preallocated 3x3 row-major arrays, so every step does a fixed amount of work and never allocates.
+ * Heading is kept unwrapped.
+ */
+public final class PoseEkf {
+    private double x, y, heading;
+
+    private final double[] p = new double[9]; // covariance
+
+    // scratch
+    private final double[] f = new double[9];
+    private final double[] s = new double[9];
+    private final double[] sInv = new double[9];
+    private final double[] k = new double[9];
+    private final double[] tmp = new double[9];
+    private final double[] innovation = new double[3];
+
+    public PoseEkf(double x, double y, double heading, double varXY, double varHeading) {
+        reset(x, y, heading, varXY, varHeading);
+    }
+
+    /**
+     * Replaces the state and resets the covariance to a diagonal.
+     */
+    public void reset(double x, double y, double heading, double varXY, double varHeading) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+
+        for (int i = 0; i < 9; i++) {
+            p[i] = 0.0;
+        }
+        p[0] = varXY;
+        p[4] = varXY;
+        p[8] = varHeading;
+    }
+
+    /**
+     * Applies robot-frame odometry motion.
+     * @param varXY variance added to each translation axis
+     * @param varHeading variance added to heading
+     */
+    public void predict(double dx, double dy, double dheading, double varXY, double varHeading) {
+        double cos = Math.cos(heading), sin = Math.sin(heading);
+
+        // Jacobian of the motion model with respect to the state, at the prior heading
+        identity(f);
+        f[2] = -sin * dx - cos * dy;
+        f[5] = cos * dx - sin * dy;
+
+        x += cos * dx - sin * dy;
+        y += sin * dx + cos * dy;
+        heading += dheading;
+
+        // P = F P F^T + Q; the translation noise is isotropic, so it needs no rotation
+        multiply(f, p, tmp);
+        multiplyTransposed(tmp, f, p);
+        p[0] += varXY;
+        p[4] += varXY;
+        p[8] += varHeading;
+    }
+
+    /**
+     * Corrects with an absolute heading measurement.
+     * @param gate maximum squared Mahalanobis distance to accept
+     * @return false if the measurement was rejected by the gate
+     */
+    public boolean correctHeading(double measured, double var, double gate) {
+        double innov = wrap(measured - heading);
+        double sHeading = p[8] + var;
+        if (innov * innov / sHeading > gate) {
+            return false;
+        }
+
+        double k0 = p[2] / sHeading, k1 = p[5] / sHeading, k2 = p[8] / sHeading;
+        x += k0 * innov;
+        y += k1 * innov;
+        heading += k2 * innov;
+
+        // P -= K H P, where H P is the heading row of P
+        double p20 = p[6], p21 = p[7], p22 = p[8];
+        p[0] -= k0 * p20;
+        p[1] -= k0 * p21;
+        p[2] -= k0 * p22;
+        p[3] -= k1 * p20;
+        p[4] -= k1 * p21;
+        p[5] -= k1 * p22;
+        p[6] -= k2 * p20;
+        p[7] -= k2 * p21;
+        p[8] -= k2 * p22;
+        symmetrize(p);
+
+        return true;
+    }
+
+    /**
+     * Corrects with an absolute pose measurement.
+     * @param gate maximum squared Mahalanobis distance to accept
+     * @return false if the measurement was rejected by the gate or was degenerate
+     */
+    public boolean correctPose(double measuredX, double measuredY, double measuredHeading,
+                               double varXY, double varHeading, double gate) {
+        // S = P + R
+        System.arraycopy(p, 0, s, 0, 9);
+        s[0] += varXY;
+        s[4] += varXY;
+        s[8] += varHeading;
+        if (!invert(s, sInv)) {
+            return false;
+        }
+
+        innovation[0] = measuredX - x;
+        innovation[1] = measuredY - y;
+        innovation[2] = wrap(measuredHeading - heading);
+
+        double distance = 0.0;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                distance += innovation[i] * sInv[3 * i + j] * innovation[j];
+            }
+        }
+        if (distance > gate) {
+            return false;
+        }
+
+        // K = P S^-1
+        multiply(p, sInv, k);
+
+        x += k[0] * innovation[0] + k[1] * innovation[1] + k[2] * innovation[2];
+        y += k[3] * innovation[0] + k[4] * innovation[1] + k[5] * innovation[2];
+        heading += k[6] * innovation[0] + k[7] * innovation[1] + k[8] * innovation[2];
+
+        // P -= K P
+        multiply(k, p, tmp);
+        for (int i = 0; i < 9; i++) {
+            p[i] -= tmp[i];
+        }
+        symmetrize(p);
+
+        return true;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getHeading() {
+        return heading;
+    }
+
+    /**
+     * @param i row, 0 to 2 for x, y, heading
+     * @param j column, 0 to 2 for x, y, heading
+     */
+    public double getCovariance(int i, int j) {
+        return p[3 * i + j];
+    }
+
+    private static void identity(double[] m) {
+        for (int i = 0; i < 9; i++) {
+            m[i] = (i % 4 == 0) ? 1.0 : 0.0;
+        }
+    }
+
+    // out = a b
+    private static void multiply(double[] a, double[] b, double[] out) {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                out[3 * i + j] = a[3 * i] * b[j] + a[3 * i + 1] * b[3 + j] + a[3 * i + 2] * b[6 + j];
+            }
+        }
+    }
+
+    // out = a b^T
+    private static void multiplyTransposed(double[] a, double[] b, double[] out) {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                out[3 * i + j] = a[3 * i] * b[3 * j] + a[3 * i + 1] * b[3 * j + 1] + a[3 * i + 2] * b[3 * j + 2];
+            }
+        }
+    }
+
+    // out = m^-1 by the adjugate; returns false if m is singular
+    private static boolean invert(double[] m, double[] out) {
+        double c00 = m[4] * m[8] - m[5] * m[7];
+        double c01 = m[5] * m[6] - m[3] * m[8];
+        double c02 = m[3] * m[7] - m[4] * m[6];
+
+        double det = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (Math.abs(det) < 1e-12) {
+            return false;
+        }
+        double invDet = 1.0 / det;
+
+        out[0] = c00 * invDet;
+        out[1] = (m[2] * m[7] - m[1] * m[8]) * invDet;
+        out[2] = (m[1] * m[5] - m[2] * m[4]) * invDet;
+        out[3] = c01 * invDet;
+        out[4] = (m[0] * m[8] - m[2] * m[6]) * invDet;
+        out[5] = (m[2] * m[3] - m[0] * m[5]) * invDet;
+        out[6] = c02 * invDet;
+        out[7] = (m[1] * m[6] - m[0] * m[7]) * invDet;
+        out[8] = (m[0] * m[4] - m[1] * m[3]) * invDet;
+        return true;
+    }
+
+    // keeps rounding from making the covariance asymmetric
+    private static void symmetrize(double[] m) {
+        double m01 = 0.5 * (m[1] + m[3]);
+        double m02 = 0.5 * (m[2] + m[6]);
+        double m12 = 0.5 * (m[5] + m[7]);
+        m[1] = m[3] = m01;
+        m[2] = m[6] = m02;
+        m[5] = m[7] = m12;
+    }
+
+    private static double wrap(double angle) {
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+}
@@ -0,0 +1,167 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2d;
+
+/**
+ * Fixed-capacity ring buffer of timestamped poses stored in primitive arrays. Once full, each add
+ * overwrites the oldest entry. Nothing here allocates except {@link #getPose(long)}.
+ * <p>
+ * Not thread-safe: the history belongs to the drive's control thread, which both adds to it and
+ * draws it. Other threads must not read it while the drive runs; use the localizer's
+ * {@link PoseSnapshot} instead.
+ */
+public final class PoseHistory {
+    private final double[] xs, ys, headings;
+    private final long[] timestamps;
+
+    private int head; // index of the oldest entry
+    private int size;
+
+    public PoseHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        xs = new double[capacity];
+        ys = new double[capacity];
+        headings = new double[capacity];
+        timestamps = new long[capacity];
+    }
+
+    public void add(long timestampNanos, double x, double y, double heading) {
+        int i;
+        if (size < xs.length) {
+            i = (head + size) % xs.length;
+            size++;
+        } else {
+            i = head;
+            head = (head + 1) % xs.length;
+        }
+
+        xs[i] = x;
+        ys[i] = y;
+        headings[i] = heading;
+        timestamps[i] = timestampNanos;
+    }
+
+    public void add(long timestampNanos, Pose2d pose) {
+        add(timestampNanos, pose.position.x, pose.position.y, pose.heading.toDouble());
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return xs.length;
+    }
+
+    // accessors take a logical index; 0 is the oldest entry
+    public double getX(int i) {
+        return xs[physical(i)];
+    }
+
+    public double getY(int i) {
+        return ys[physical(i)];
+    }
+
+    public double getHeading(int i) {
+        return headings[physical(i)];
+    }
+
+    public long getTimestamp(int i) {
+        return timestamps[physical(i)];
+    }
+
+    /**
+     * Copies the positions, oldest first, into arrays of length {@link #capacity()} that the caller
+     * keeps around for drawing. Unused trailing slots repeat the newest position so the arrays can
+     * be handed to Canvas.strokePolyline() as-is. This is a copy, not a view: the ring wraps around
+     * and strokePolyline() only takes whole arrays, so up to two array copies of the capacity are
+     * made on each call, without allocating.
+     */
+    public void exportPolyline(double[] xPoints, double[] yPoints) {
+        if (xPoints.length != xs.length || yPoints.length != xs.length) {
+            throw new IllegalArgumentException("polyline arrays must match the history capacity");
+        }
+        if (size == 0) {
+            return;
+        }
+
+        int firstLength = Math.min(size, xs.length - head);
+        System.arraycopy(xs, head, xPoints, 0, firstLength);
+        System.arraycopy(ys, head, yPoints, 0, firstLength);
+        System.arraycopy(xs, 0, xPoints, firstLength, size - firstLength);
+        System.arraycopy(ys, 0, yPoints, firstLength, size - firstLength);
+
+        for (int i = size; i < xPoints.length; i++) {
+            xPoints[i] = xPoints[size - 1];
+            yPoints[i] = yPoints[size - 1];
+        }
+    }
+
+    /**
+     * Linearly interpolates the pose at the given time, interpolating heading along the shorter arc.
+     * @param out receives x, y, heading
+     * @return false if the time is outside of the stored history
+     */
+    public boolean interpolate(long timestampNanos, double[] out) {
+        if (size == 0
+                || timestampNanos < getTimestamp(0)
+                || timestampNanos > getTimestamp(size - 1)) {
+            return false;
+        }
+
+        // find the last entry at or before the time
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (getTimestamp(mid) <= timestampNanos) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        int a = physical(lo);
+        if (lo == size - 1 || timestamps[a] == timestampNanos) {
+            out[0] = xs[a];
+            out[1] = ys[a];
+            out[2] = headings[a];
+            return true;
+        }
+
+        int b = physical(lo + 1);
+        double s = (double) (timestampNanos - timestamps[a]) / (timestamps[b] - timestamps[a]);
+        double headingDelta = headings[b] - headings[a];
+        headingDelta = Math.atan2(Math.sin(headingDelta), Math.cos(headingDelta));
+
+        out[0] = xs[a] + s * (xs[b] - xs[a]);
+        out[1] = ys[a] + s * (ys[b] - ys[a]);
+        out[2] = headings[a] + s * headingDelta;
+        return true;
+    }
+
+    /**
+     * @return the interpolated pose at the given time, or null if it is outside of the history
+     */
+    public Pose2d getPose(long timestampNanos) {
+        double[] out = new double[3];
+        if (!interpolate(timestampNanos, out)) {
+            return null;
+        }
+        return new Pose2d(out[0], out[1], out[2]);
+    }
+
+    private int physical(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + " out of range for size " + size);
+        }
+        return (head + i) % xs.length;
+    }
+}
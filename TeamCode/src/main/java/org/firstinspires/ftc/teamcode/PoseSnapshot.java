@@ -0,0 +1,39 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Vector2d;
+
+/**
+ * Immutable localizer output published through a volatile reference. Readers on any thread get a
+ * pose and velocity that belong together without locking; the single writer (the thread calling
+ * update()) never blocks. The sequence number increases by one with every publication, so readers
+ * can tell whether anything changed since their last look.
+ */
+public final class PoseSnapshot {
+    public final Pose2d pose;
+    public final PoseVelocity2d velocity; // robot frame
+    public final long timestampNanos; // System.nanoTime() at publication
+    public final long sequence;
+
+    public PoseSnapshot(Pose2d pose, PoseVelocity2d velocity, long timestampNanos, long sequence) {
+        this.pose = pose;
+        this.velocity = velocity;
+        this.timestampNanos = timestampNanos;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return the first snapshot of a localizer, at rest at the given pose
+     */
+    public static PoseSnapshot initial(Pose2d pose) {
+        return new PoseSnapshot(pose, new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0), System.nanoTime(), 0);
+    }
+
+    /**
+     * @return the snapshot that follows this one, stamped now
+     */
+    public PoseSnapshot next(Pose2d pose, PoseVelocity2d velocity) {
+        return new PoseSnapshot(pose, velocity, System.nanoTime(), sequence + 1);
+    }
+}
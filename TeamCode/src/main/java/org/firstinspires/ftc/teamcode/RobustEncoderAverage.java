@@ -0,0 +1,199 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Combines the encoders on one side of a drive into a single position delta and velocity that
+ * survives a slipping or disconnected wheel. Each update, every encoder's delta is compared with a
+ * reference: the median for three or more encoders, or the smaller of the two deltas for a pair,
+ * since a slipping wheel spins faster than the robot moves (unless the smaller one hasn't moved at
+ * all, which looks like a disconnect). Encoders are then averaged with weights that fall off with
+ * their distance from the reference. An encoder that disagrees for several updates in a row is
+ * flagged as faulty and left out until it agrees again for as many updates in a row while the
+ * robot is moving; standing still proves nothing, since every encoder agrees at rest. Everything
+ * lives in primitive arrays and nothing allocates.
+ */
+public final class RobustEncoderAverage {
+    private final double toleranceTicks;
+    private final double toleranceFraction;
+    private final int faultUpdates;
+
+    private final double[] lastPositions, deltas, velocities, weights, sorted;
+    private final int[] streaks, agreeStreaks;
+    private final boolean[] faulty;
+    private final long[] disagreements, faults;
+    private boolean initialized;
+
+    private double delta, velocity;
+
+    /**
+     * @param toleranceTicks disagreement with the reference allowed per update
+     * @param toleranceFraction additional disagreement allowed as a fraction of the reference
+     * @param faultUpdates consecutive disagreeing updates before an encoder is flagged, and
+     *                     consecutive agreeing updates with motion before the flag clears
+     */
+    public RobustEncoderAverage(int size, double toleranceTicks, double toleranceFraction, int faultUpdates) {
+        if (size < 1) {
+            throw new IllegalArgumentException("need at least one encoder");
+        }
+        if (toleranceTicks <= 0) {
+            throw new IllegalArgumentException("toleranceTicks must be positive");
+        }
+
+        this.toleranceTicks = toleranceTicks;
+        this.toleranceFraction = toleranceFraction;
+        this.faultUpdates = faultUpdates;
+
+        lastPositions = new double[size];
+        deltas = new double[size];
+        velocities = new double[size];
+        weights = new double[size];
+        sorted = new double[size];
+        streaks = new int[size];
+        agreeStreaks = new int[size];
+        faulty = new boolean[size];
+        disagreements = new long[size];
+        faults = new long[size];
+    }
+
+    public int size() {
+        return deltas.length;
+    }
+
+    /**
+     * Records encoder i's reading for this update. Call for every encoder, then {@link #update()}.
+     */
+    public void set(int i, double position, double velocity) {
+        deltas[i] = position - lastPositions[i];
+        lastPositions[i] = position;
+        velocities[i] = velocity;
+    }
+
+    /**
+     * Combines the readings passed to {@link #set}.
+     * @return false on the first update, when there are no deltas yet
+     */
+    public boolean update() {
+        if (!initialized) {
+            initialized = true;
+            delta = 0.0;
+            velocity = 0.0;
+            return false;
+        }
+
+        int n = deltas.length;
+        double reference = reference();
+        double tolerance = toleranceTicks + toleranceFraction * Math.abs(reference);
+        boolean moving = Math.abs(reference) > toleranceTicks;
+
+        double weightSum = 0.0;
+        for (int i = 0; i < n; i++) {
+            double residual = Math.abs(deltas[i] - reference);
+            if (residual > tolerance) {
+                disagreements[i]++;
+                agreeStreaks[i] = 0;
+                if (++streaks[i] >= faultUpdates && !faulty[i]) {
+                    faulty[i] = true;
+                    faults[i]++;
+                }
+            } else {
+                streaks[i] = 0;
+                // updates at rest neither count toward clearing nor break the streak
+                if (faulty[i] && moving && ++agreeStreaks[i] >= faultUpdates) {
+                    faulty[i] = false;
+                    agreeStreaks[i] = 0;
+                }
+            }
+
+            double r = residual / tolerance;
+            weights[i] = faulty[i] ? 0.0 : 1.0 / (1.0 + r * r);
+            weightSum += weights[i];
+        }
+
+        if (weightSum == 0.0) {
+            // every encoder is flagged; the reference is the best there is
+            delta = reference;
+            velocity = referenceVelocity(reference);
+            return true;
+        }
+
+        double d = 0.0, v = 0.0;
+        for (int i = 0; i < n; i++) {
+            d += weights[i] * deltas[i];
+            v += weights[i] * velocities[i];
+        }
+        delta = d / weightSum;
+        velocity = v / weightSum;
+        return true;
+    }
+
+    private double reference() {
+        int n = deltas.length;
+        if (n == 1) {
+            return deltas[0];
+        }
+        if (n == 2) {
+            // a disconnected encoder stops dead while the other keeps counting
+            if (deltas[0] == 0.0 && Math.abs(deltas[1]) > toleranceTicks) {
+                return deltas[1];
+            }
+            if (deltas[1] == 0.0 && Math.abs(deltas[0]) > toleranceTicks) {
+                return deltas[0];
+            }
+            return Math.abs(deltas[0]) <= Math.abs(deltas[1]) ? deltas[0] : deltas[1];
+        }
+
+        // insertion sort; there are only a handful of encoders
+        for (int i = 0; i < n; i++) {
+            double x = deltas[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j] > x) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = x;
+        }
+        return (n & 1) == 1 ? sorted[n / 2] : 0.5 * (sorted[n / 2 - 1] + sorted[n / 2]);
+    }
+
+    // velocity of the encoder whose delta is closest to the reference
+    private double referenceVelocity(double reference) {
+        int best = 0;
+        for (int i = 1; i < deltas.length; i++) {
+            if (Math.abs(deltas[i] - reference) < Math.abs(deltas[best] - reference)) {
+                best = i;
+            }
+        }
+        return velocities[best];
+    }
+
+    /**
+     * @return combined position delta of the last update in ticks
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    /**
+     * @return combined velocity of the last update in ticks per second
+     */
+    public double getVelocity() {
+        return velocity;
+    }
+
+    public boolean isFaulty(int i) {
+        return faulty[i];
+    }
+
+    /**
+     * @return number of updates where encoder i disagreed with the reference
+     */
+    public long getDisagreements(int i) {
+        return disagreements[i];
+    }
+
+    /**
+     * @return number of times encoder i has been flagged as faulty
+     */
+    public long getFaults(int i) {
+        return faults[i];
+    }
+}
@@ -0,0 +1,114 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+
+/**
+ * Detects wheel slip by comparing the velocity implied by the drive wheels with the velocity
+ * measured by a localizer that doesn't use them (dead wheels or a Pinpoint). A slipping wheel
+ * spins faster than the robot moves, so the two disagree. The flag stays up for a short hold time
+ * after they agree again, and {@link #getAccelScale()} drops while slip is flagged and then ramps
+ * back. The follower slows its trajectory clock so its acceleration scales by this factor.
+ */
+@Config
+public final class SlipMonitor {
+    public static class Params {
+        public boolean enabled = true;
+
+        // detection parameters
+        public double speedThreshold = 6.0; // in/s of disagreement, plus the fraction below
+        public double speedFraction = 0.25; // of the localizer's speed
+        public double angVelThreshold = 0.5; // rad/s of disagreement
+        public double clearFraction = 0.5; // of the thresholds; disagreement must drop below this to clear
+        public long holdMs = 150; // stay flagged this long after clearing
+
+        // response parameters
+        public double accelScale = 0.5; // acceleration scale while slipping
+        public double recoveryTime = 0.5; // s to ramp from accelScale back to 1
+    }
+
+    public static Params PARAMS = new Params();
+
+    private boolean slipping;
+    private long lastSlipNanos;
+    private long lastUpdateNanos;
+    private double scale = 1.0;
+
+    private double speedError, angVelError; // latest disagreement
+    private long slipEvents;
+    private long slipNanos;
+
+    /**
+     * Compares the wheel velocity with the localizer's velocity, both in the robot frame.
+     */
+    public void update(long timestampNanos, double wheelVelX, double wheelVelY, double wheelAngVel,
+                       PoseVelocity2d localizerVel) {
+        double dt = lastUpdateNanos == 0 ? 0.0 : (timestampNanos - lastUpdateNanos) / 1e9;
+        lastUpdateNanos = timestampNanos;
+
+        speedError = Math.hypot(wheelVelX - localizerVel.linearVel.x, wheelVelY - localizerVel.linearVel.y);
+        angVelError = Math.abs(wheelAngVel - localizerVel.angVel);
+
+        double speedThreshold = PARAMS.speedThreshold
+                + PARAMS.speedFraction * Math.hypot(localizerVel.linearVel.x, localizerVel.linearVel.y);
+        double angVelThreshold = PARAMS.angVelThreshold;
+
+        if (speedError > speedThreshold || angVelError > angVelThreshold) {
+            if (!slipping) {
+                slipping = true;
+                slipEvents++;
+            }
+            lastSlipNanos = timestampNanos;
+        } else if (slipping
+                && speedError < PARAMS.clearFraction * speedThreshold
+                && angVelError < PARAMS.clearFraction * angVelThreshold
+                && timestampNanos - lastSlipNanos > PARAMS.holdMs * 1_000_000L) {
+            slipping = false;
+        }
+
+        if (slipping) {
+            slipNanos += (long) (dt * 1e9);
+            scale = PARAMS.accelScale;
+        } else if (PARAMS.recoveryTime > 0) {
+            scale = Math.min(1.0, scale + dt * (1.0 - PARAMS.accelScale) / PARAMS.recoveryTime);
+        } else {
+            scale = 1.0;
+        }
+    }
+
+    public void reset() {
+        slipping = false;
+        lastUpdateNanos = 0;
+        scale = 1.0;
+    }
+
+    public boolean isSlipping() {
+        return slipping;
+    }
+
+    /**
+     * @return factor to multiply the commanded acceleration by; 1 when not slipping
+     */
+    public double getAccelScale() {
+        return scale;
+    }
+
+    /**
+     * @return latest translational disagreement between the wheels and the localizer in in/s
+     */
+    public double getSpeedError() {
+        return speedError;
+    }
+
+    public double getAngVelError() {
+        return angVelError;
+    }
+
+    public long getSlipEvents() {
+        return slipEvents;
+    }
+
+    public double getSlipSeconds() {
+        return slipNanos / 1e9;
+    }
+}
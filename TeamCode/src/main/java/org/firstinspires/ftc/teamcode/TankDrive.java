@@ -20,14 +20,16 @@ import com.acmerobotics.roadrunner.PoseVelocity2dDual;
 import com.acmerobotics.roadrunner.ProfileAccelConstraint;
 import com.acmerobotics.roadrunner.ProfileParams;
 import com.acmerobotics.roadrunner.RamseteController;
+import com.acmerobotics.roadrunner.Rotation2dDual;
 import com.acmerobotics.roadrunner.TankKinematics;
 import com.acmerobotics.roadrunner.Time;
 import com.acmerobotics.roadrunner.TimeTrajectory;
 import com.acmerobotics.roadrunner.TimeTurn;
 import com.acmerobotics.roadrunner.TrajectoryActionBuilder;
+import com.acmerobotics.roadrunner.TrajectoryActionFactory;
+import com.acmerobotics.roadrunner.TurnActionFactory;
 import com.acmerobotics.roadrunner.TrajectoryBuilderParams;
 import com.acmerobotics.roadrunner.TurnConstraints;
-import com.acmerobotics.roadrunner.Twist2dDual;
 import com.acmerobotics.roadrunner.Vector2d;
 import com.acmerobotics.roadrunner.Vector2dDual;
 import com.acmerobotics.roadrunner.VelConstraint;
@@ -55,7 +57,6 @@ import org.firstinspires.ftc.teamcode.messages.TankLocalizerInputsMessage;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 @Config
@@ -94,6 +95,33 @@ public final class TankDrive {
         // turn controller gains
         public double turnGain = 0.0;
         public double turnVelGain = 0.0;
+
+        // motor output parameters
+        public double powerDeadband = 0.005; // skip writes this close to the last written power
+
+        // battery voltage sampling parameters
+        public long voltageSamplePeriodMs = 50;
+        public double voltageFilterTimeConstant = 0.25; // in seconds
+
+        // pose history parameters
+        public int poseHistoryCapacity = 100;
+
+        // trajectory compilation parameters
+        public double trajectoryResolution = 0.01; // seconds between lookup table samples
+
+        // control thread parameters
+        public long controlPeriodMs = 10;
+        public long controlHeartbeatTimeoutMs = 500; // watchdog; 0 disables it
+
+        // velocity estimation parameters
+        public int velocityWindow = 0; // samples in the least-squares velocity fit; 0 uses the hub's velocity
+        public int velocityFitOrder = 1; // 1 for a line, 2 for a parabola
+
+        // encoder averaging parameters
+        // each side combines its encoders robustly so one slipping or unplugged wheel doesn't drag the pose
+        public double encoderToleranceTicks = 20; // disagreement allowed per update, plus the fraction below
+        public double encoderToleranceFraction = 0.2; // of the side's motion
+        public int encoderFaultUpdates = 10; // consecutive disagreements before an encoder is ignored
     }
 
     public static Params PARAMS = new Params();
@@ -110,14 +138,42 @@ public final class TankDrive {
     public final AccelConstraint defaultAccelConstraint =
             new ProfileAccelConstraint(PARAMS.minProfileAccel, PARAMS.maxProfileAccel);
 
+    // everything baked into the kinematics and constraints above, for keying the trajectory cache
+    // trajectory builder settings; part of the cache key along with the constraints
+    private static final double ARC_LENGTH_SAMPLING_EPS = 1e-6;
+    private static final double PROFILE_DISP_RESOLUTION = 0.25;
+    private static final double PROFILE_ANGULAR_RESOLUTION = 0.1;
+    private static final double PROFILE_ANGLE_SAMPLING_EPS = 1e-2;
+    private static final double BEGIN_END_VEL = 0.0;
+
+    private final String constraintKey = "tank" + Arrays.toString(new double[] {
+            PARAMS.inPerTick, PARAMS.trackWidthTicks,
+            PARAMS.maxWheelVel, PARAMS.minProfileAccel, PARAMS.maxProfileAccel,
+            PARAMS.maxAngVel, PARAMS.maxAngAccel,
+            ARC_LENGTH_SAMPLING_EPS, PROFILE_DISP_RESOLUTION, PROFILE_ANGULAR_RESOLUTION,
+            PROFILE_ANGLE_SAMPLING_EPS, BEGIN_END_VEL,
+    });
+
     public final List<DcMotorEx> leftMotors, rightMotors;
 
+    public final MotorPowerCache motorPowers;
+
     public final LazyImu lazyImu;
 
     public final VoltageSensor voltageSensor;
+    public final VoltageSampler voltageSampler;
+
+    // owns every hub in MANUAL mode; loops that don't call updatePoseEstimate() must call
+    // bulkReads.beginCycle() once per loop to see fresh encoder and sensor values
+    public final BulkReadManager bulkReads;
+
+    public final LoopProfiler profiler = new LoopProfiler(1_000_000_000);
 
     public final Localizer localizer;
-    private final LinkedList<Pose2d> poseHistory = new LinkedList<>();
+    // only touch from the thread running the drive
+    public final PoseHistory poseHistory = new PoseHistory(PARAMS.poseHistoryCapacity);
+    private final double[] poseHistoryXPoints = new double[poseHistory.capacity()];
+    private final double[] poseHistoryYPoints = new double[poseHistory.capacity()];
 
     private final DownsampledWriter estimatedPoseWriter = new DownsampledWriter("ESTIMATED_POSE", 50_000_000);
     private final DownsampledWriter targetPoseWriter = new DownsampledWriter("TARGET_POSE", 50_000_000);
@@ -125,18 +181,28 @@ public final class TankDrive {
 
     private final DownsampledWriter tankCommandWriter = new DownsampledWriter("TANK_COMMAND", 50_000_000);
 
+    private final double[] targetSample = new double[CompiledTrajectory.STRIDE];
+
     public class DriveLocalizer implements Localizer {
         public final List<Encoder> leftEncs, rightEncs;
         private Pose2d pose;
+        private volatile PoseSnapshot snapshot;
+
+        private final PositionVelocityPair[] leftReadings, rightReadings;
+        private final TankLocalizerInputsMessage inputsMessage;
+        public final RobustEncoderAverage leftAverage, rightAverage;
 
-        private double lastLeftPos, lastRightPos;
-        private boolean initialized;
+        private final OdometryKernels.Tank odometry = new OdometryKernels.Tank(
+                PARAMS.inPerTick, kinematics.trackWidth);
+        private final OdometryKernels.Output odometryOutput = new OdometryKernels.Output();
+        private final OdometryKernels.PoseIntegrator integrator;
 
         public DriveLocalizer(Pose2d pose) {
             {
                 List<Encoder> leftEncs = new ArrayList<>();
                 for (DcMotorEx m : leftMotors) {
-                    Encoder e = new OverflowEncoder(new RawEncoder(m));
+                    Encoder e = VelocityEstimator.wrap(bulkReads.track(new OverflowEncoder(new RawEncoder(m))),
+                            PARAMS.velocityWindow, PARAMS.velocityFitOrder);
                     leftEncs.add(e);
                 }
                 this.leftEncs = Collections.unmodifiableList(leftEncs);
@@ -145,7 +211,8 @@ public final class TankDrive {
             {
                 List<Encoder> rightEncs = new ArrayList<>();
                 for (DcMotorEx m : rightMotors) {
-                    Encoder e = new OverflowEncoder(new RawEncoder(m));
+                    Encoder e = VelocityEstimator.wrap(bulkReads.track(new OverflowEncoder(new RawEncoder(m))),
+                            PARAMS.velocityWindow, PARAMS.velocityFitOrder);
                     rightEncs.add(e);
                 }
                 this.rightEncs = Collections.unmodifiableList(rightEncs);
@@ -154,12 +221,42 @@ public final class TankDrive {
             // TODO: reverse encoder directions if needed
             //   leftEncs.get(0).setDirection(DcMotorSimple.Direction.REVERSE);
 
+            leftReadings = new PositionVelocityPair[leftEncs.size()];
+            rightReadings = new PositionVelocityPair[rightEncs.size()];
+            inputsMessage = new TankLocalizerInputsMessage(leftEncs.size(), rightEncs.size());
+            leftAverage = new RobustEncoderAverage(leftEncs.size(), PARAMS.encoderToleranceTicks,
+                    PARAMS.encoderToleranceFraction, PARAMS.encoderFaultUpdates);
+            rightAverage = new RobustEncoderAverage(rightEncs.size(), PARAMS.encoderToleranceTicks,
+                    PARAMS.encoderToleranceFraction, PARAMS.encoderFaultUpdates);
+
             this.pose = pose;
+            integrator = new OdometryKernels.PoseIntegrator(pose);
+            snapshot = PoseSnapshot.initial(pose);
+        }
+
+        /**
+         * @return number of encoders currently left out of the average for disagreeing with the rest
+         */
+        public int getFaultyEncoders() {
+            int count = 0;
+            for (int i = 0; i < leftAverage.size(); i++) {
+                if (leftAverage.isFaulty(i)) {
+                    count++;
+                }
+            }
+            for (int i = 0; i < rightAverage.size(); i++) {
+                if (rightAverage.isFaulty(i)) {
+                    count++;
+                }
+            }
+            return count;
         }
 
         @Override
         public void setPose(Pose2d pose) {
             this.pose = pose;
+            integrator.set(pose);
+            snapshot = snapshot.next(pose, snapshot.velocity);
         }
 
         @Override
@@ -167,70 +264,51 @@ public final class TankDrive {
             return pose;
         }
 
+        @Override
+        public PoseSnapshot getSnapshot() {
+            return snapshot;
+        }
+
         @Override
         public PoseVelocity2d update() {
-            Twist2dDual<Time> delta;
-
-            List<PositionVelocityPair> leftReadings = new ArrayList<>(), rightReadings = new ArrayList<>();
-            double meanLeftPos = 0.0, meanLeftVel = 0.0;
-            for (Encoder e : leftEncs) {
-                PositionVelocityPair p = e.getPositionAndVelocity();
-                meanLeftPos += p.position;
-                meanLeftVel += p.velocity;
-                leftReadings.add(p);
-            }
-            meanLeftPos /= leftEncs.size();
-            meanLeftVel /= leftEncs.size();
-
-            double meanRightPos = 0.0, meanRightVel = 0.0;
-            for (Encoder e : rightEncs) {
-                PositionVelocityPair p = e.getPositionAndVelocity();
-                meanRightPos += p.position;
-                meanRightVel += p.velocity;
-                rightReadings.add(p);
+            for (int i = 0; i < leftReadings.length; i++) {
+                PositionVelocityPair p = leftEncs.get(i).getPositionAndVelocity();
+                leftAverage.set(i, p.position, p.velocity);
+                leftReadings[i] = p;
             }
-            meanRightPos /= rightEncs.size();
-            meanRightVel /= rightEncs.size();
 
-            FlightRecorder.write("TANK_LOCALIZER_INPUTS",
-                     new TankLocalizerInputsMessage(leftReadings, rightReadings));
-
-            if (!initialized) {
-                initialized = true;
-
-                lastLeftPos = meanLeftPos;
-                lastRightPos = meanRightPos;
+            for (int i = 0; i < rightReadings.length; i++) {
+                PositionVelocityPair p = rightEncs.get(i).getPositionAndVelocity();
+                rightAverage.set(i, p.position, p.velocity);
+                rightReadings[i] = p;
+            }
 
-                return new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0);
+            FlightRecorder.write("TANK_LOCALIZER_INPUTS", inputsMessage.set(leftReadings, rightReadings));
 
+            boolean leftReady = leftAverage.update();
+            boolean rightReady = rightAverage.update();
+            if (!leftReady || !rightReady) {
+                PoseVelocity2d vel = new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0);
+                snapshot = snapshot.next(pose, vel);
+                return vel;
             }
 
-            Twist2dDual<Time> twist = kinematics.forward(new TankKinematics.WheelIncrements<>(
-                    new DualNum<Time>(new double[]{
-                            meanLeftPos - lastLeftPos,
-                            meanLeftVel
-                    }).times(PARAMS.inPerTick),
-                    new DualNum<Time>(new double[]{
-                            meanRightPos - lastRightPos,
-                            meanRightVel,
-                    }).times(PARAMS.inPerTick)
-            ));
-
-            lastLeftPos = meanLeftPos;
-            lastRightPos = meanRightPos;
+            odometry.compute(leftAverage.getDelta(), rightAverage.getDelta(),
+                    leftAverage.getVelocity(), rightAverage.getVelocity(), odometryOutput);
 
-            pose = pose.plus(twist.value());
+            integrator.integrate(odometryOutput.dx, odometryOutput.dy, odometryOutput.dheading);
+            pose = integrator.toPose();
 
-            return twist.velocity().value();
+            PoseVelocity2d vel = odometryOutput.velocity();
+            snapshot = snapshot.next(pose, vel);
+            return vel;
         }
     }
 
     public TankDrive(HardwareMap hardwareMap, Pose2d pose) {
         LynxFirmware.throwIfModulesAreOutdated(hardwareMap);
 
-        for (LynxModule module : hardwareMap.getAll(LynxModule.class)) {
-            module.setBulkCachingMode(LynxModule.BulkCachingMode.AUTO);
-        }
+        bulkReads = new BulkReadManager(hardwareMap.getAll(LynxModule.class));
 
         // TODO: make sure your config has motors with these names (or change them)
         //   add additional motors on each side if you have them
@@ -248,13 +326,23 @@ public final class TankDrive {
         // TODO: reverse motor directions if needed
         //   leftMotors.get(0).setDirection(DcMotorSimple.Direction.REVERSE);
 
+        {
+            List<DcMotorEx> motors = new ArrayList<>(leftMotors);
+            motors.addAll(rightMotors);
+            motorPowers = new MotorPowerCache(motors);
+        }
+
         // TODO: make sure your config has an IMU with this name (can be BNO or BHI)
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
         lazyImu = new LazyImu(hardwareMap, "imu", new RevHubOrientationOnRobot(
                 PARAMS.logoFacingDirection, PARAMS.usbFacingDirection));
 
         voltageSensor = hardwareMap.voltageSensor.iterator().next();
+        voltageSampler = new VoltageSampler(voltageSensor,
+                PARAMS.voltageSamplePeriodMs, PARAMS.voltageFilterTimeConstant);
 
+        // TODO: to integrate dead wheels on their own thread, pass the bulk read manager along
+        //   localizer = new ThreeDeadWheelLocalizer(hardwareMap, PARAMS.inPerTick, pose, bulkReads);
         localizer = new DriveLocalizer(pose);
 
         FlightRecorder.write("TANK_PARAMS", PARAMS);
@@ -269,33 +357,37 @@ public final class TankDrive {
             maxPowerMag = Math.max(maxPowerMag, power.value());
         }
 
-        for (DcMotorEx m : leftMotors) {
-            m.setPower(wheelVels.left.get(0) / maxPowerMag);
+        setMotorPowers(wheelVels.left.get(0) / maxPowerMag, wheelVels.right.get(0) / maxPowerMag);
+    }
+
+    private void setMotorPowers(double leftPower, double rightPower) {
+        // the cache holds the left motors first, then the right motors
+        for (int i = 0; i < leftMotors.size(); i++) {
+            motorPowers.setPower(i, leftPower, PARAMS.powerDeadband);
         }
-        for (DcMotorEx m : rightMotors) {
-            m.setPower(wheelVels.right.get(0) / maxPowerMag);
+        for (int i = leftMotors.size(); i < motorPowers.size(); i++) {
+            motorPowers.setPower(i, rightPower, PARAMS.powerDeadband);
         }
     }
 
     public final class FollowTrajectoryAction implements Action {
-        public final TimeTrajectory timeTrajectory;
+        public final TimeTrajectory timeTrajectory; // null when loaded from the trajectory cache
+        public final CompiledTrajectory compiledTrajectory;
         private double beginTs = -1;
 
         private final double[] xPoints, yPoints;
 
         public FollowTrajectoryAction(TimeTrajectory t) {
-            timeTrajectory = t;
-
-            List<Double> disps = com.acmerobotics.roadrunner.Math.range(
-                    0, t.path.length(),
-                    Math.max(2, (int) Math.ceil(t.path.length() / 2)));
-            xPoints = new double[disps.size()];
-            yPoints = new double[disps.size()];
-            for (int i = 0; i < disps.size(); i++) {
-                Pose2d p = t.path.get(disps.get(i), 1).value();
-                xPoints[i] = p.position.x;
-                yPoints[i] = p.position.y;
-            }
+            this(new CompiledTrajectory(t, PARAMS.trajectoryResolution));
+        }
+
+        public FollowTrajectoryAction(CompiledTrajectory t) {
+            timeTrajectory = t.timeTrajectory;
+            compiledTrajectory = t;
+
+            double[][] polyline = t.polyline(2);
+            xPoints = polyline[0];
+            yPoints = polyline[1];
         }
 
         @Override
@@ -308,42 +400,60 @@ public final class TankDrive {
                 t = Actions.now() - beginTs;
             }
 
-            if (t >= timeTrajectory.duration) {
-                for (DcMotorEx m : leftMotors) {
-                    m.setPower(0);
-                }
-                for (DcMotorEx m : rightMotors) {
-                    m.setPower(0);
-                }
+            if (t >= compiledTrajectory.duration) {
+                setMotorPowers(0, 0);
 
                 return false;
             }
 
-            DualNum<Time> x = timeTrajectory.profile.get(t);
-
-            Pose2dDual<Arclength> txWorldTarget = timeTrajectory.path.get(x.value(), 3);
-            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+            profiler.start();
 
             updatePoseEstimate();
 
+            compiledTrajectory.sample(t, targetSample);
+            DualNum<Time> x = new DualNum<>(new double[] {
+                    targetSample[CompiledTrajectory.DISP],
+                    targetSample[CompiledTrajectory.DISP_VEL],
+                    targetSample[CompiledTrajectory.DISP_ACCEL],
+            });
+
+            Pose2dDual<Arclength> txWorldTarget = new Pose2dDual<>(
+                    new Vector2dDual<>(
+                            new DualNum<Arclength>(new double[] {
+                                    targetSample[CompiledTrajectory.X],
+                                    targetSample[CompiledTrajectory.PATH_X_D1],
+                                    targetSample[CompiledTrajectory.PATH_X_D2],
+                            }),
+                            new DualNum<Arclength>(new double[] {
+                                    targetSample[CompiledTrajectory.Y],
+                                    targetSample[CompiledTrajectory.PATH_Y_D1],
+                                    targetSample[CompiledTrajectory.PATH_Y_D2],
+                            })
+                    ),
+                    Rotation2dDual.exp(new DualNum<Arclength>(new double[] {
+                            targetSample[CompiledTrajectory.HEADING],
+                            targetSample[CompiledTrajectory.PATH_HEADING_D1],
+                            targetSample[CompiledTrajectory.PATH_HEADING_D2],
+                    }))
+            );
+            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+
             PoseVelocity2dDual<Time> command = new RamseteController(kinematics.trackWidth, PARAMS.ramseteZeta, PARAMS.ramseteBBar)
                     .compute(x, txWorldTarget, localizer.getPose());
             driveCommandWriter.write(new DriveCommandMessage(command));
+            profiler.mark(LoopProfiler.Phase.CONTROLLER);
 
             TankKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
+            double voltage = voltageSampler.getVoltage();
             final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
                     PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
             double leftPower = feedforward.compute(wheelVels.left) / voltage;
             double rightPower = feedforward.compute(wheelVels.right) / voltage;
             tankCommandWriter.write(new TankCommandMessage(voltage, leftPower, rightPower));
+            profiler.mark(LoopProfiler.Phase.FEEDFORWARD);
 
-            for (DcMotorEx m : leftMotors) {
-                m.setPower(leftPower);
-            }
-            for (DcMotorEx m : rightMotors) {
-                m.setPower(rightPower);
-            }
+            setMotorPowers(leftPower, rightPower);
+            profiler.mark(LoopProfiler.Phase.MOTOR_WRITE);
 
             p.put("x", localizer.getPose().position.x);
             p.put("y", localizer.getPose().position.y);
@@ -354,6 +464,14 @@ public final class TankDrive {
             p.put("yError", error.position.y);
             p.put("headingError (deg)", Math.toDegrees(error.heading.toDouble()));
 
+            p.put("suppressed motor writes", motorPowers.getSuppressedWrites());
+            p.put("duplicate encoder reads", bulkReads.getDuplicateReads());
+            p.put("out of phase encoder reads", bulkReads.getOutOfPhaseReads());
+            p.put("target interpolation error (in)", compiledTrajectory.maxPositionError);
+            if (localizer instanceof DriveLocalizer) {
+                p.put("faulty drive encoders", ((DriveLocalizer) localizer).getFaultyEncoders());
+            }
+
             // only draw when active; only one drive action should be active at a time
             Canvas c = p.fieldOverlay();
             drawPoseHistory(c);
@@ -368,6 +486,9 @@ public final class TankDrive {
             c.setStrokeWidth(1);
             c.strokePolyline(xPoints, yPoints);
 
+            profiler.mark(LoopProfiler.Phase.DASHBOARD);
+            profiler.end(p);
+
             return true;
         }
 
@@ -399,21 +520,18 @@ public final class TankDrive {
             }
 
             if (t >= turn.duration) {
-                for (DcMotorEx m : leftMotors) {
-                    m.setPower(0);
-                }
-                for (DcMotorEx m : rightMotors) {
-                    m.setPower(0);
-                }
+                setMotorPowers(0, 0);
 
                 return false;
             }
 
-            Pose2dDual<Time> txWorldTarget = turn.get(t);
-            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+            profiler.start();
 
             PoseVelocity2d robotVelRobot = updatePoseEstimate();
 
+            Pose2dDual<Time> txWorldTarget = turn.get(t);
+            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+
             PoseVelocity2dDual<Time> command = new PoseVelocity2dDual<>(
                     Vector2dDual.constant(new Vector2d(0, 0), 3),
                     txWorldTarget.heading.velocity().plus(
@@ -422,21 +540,19 @@ public final class TankDrive {
                     )
             );
             driveCommandWriter.write(new DriveCommandMessage(command));
+            profiler.mark(LoopProfiler.Phase.CONTROLLER);
 
             TankKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
+            double voltage = voltageSampler.getVoltage();
             final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
                     PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
             double leftPower = feedforward.compute(wheelVels.left) / voltage;
             double rightPower = feedforward.compute(wheelVels.right) / voltage;
             tankCommandWriter.write(new TankCommandMessage(voltage, leftPower, rightPower));
+            profiler.mark(LoopProfiler.Phase.FEEDFORWARD);
 
-            for (DcMotorEx m : leftMotors) {
-                m.setPower(leftPower);
-            }
-            for (DcMotorEx m : rightMotors) {
-                m.setPower(rightPower);
-            }
+            setMotorPowers(leftPower, rightPower);
+            profiler.mark(LoopProfiler.Phase.MOTOR_WRITE);
 
             Canvas c = p.fieldOverlay();
             drawPoseHistory(c);
@@ -450,6 +566,9 @@ public final class TankDrive {
             c.setStroke("#7C4DFFFF");
             c.fillCircle(turn.beginPose.position.x, turn.beginPose.position.y, 2);
 
+            profiler.mark(LoopProfiler.Phase.DASHBOARD);
+            profiler.end(p);
+
             return true;
         }
 
@@ -461,47 +580,75 @@ public final class TankDrive {
     }
 
     public PoseVelocity2d updatePoseEstimate() {
-        PoseVelocity2d vel = localizer.update();
-        poseHistory.add(localizer.getPose());
+        // the pose estimate is the first read of every control cycle
+        bulkReads.beginCycle();
+        profiler.mark(LoopProfiler.Phase.SENSOR_READ);
 
-        while (poseHistory.size() > 100) {
-            poseHistory.removeFirst();
-        }
+        PoseVelocity2d vel = localizer.update();
+        bulkReads.endReadPhase();
+        poseHistory.add(System.nanoTime(), localizer.getPose());
 
         estimatedPoseWriter.write(new PoseMessage(localizer.getPose()));
+        profiler.mark(LoopProfiler.Phase.LOCALIZER);
 
 
         return vel;
     }
 
     private void drawPoseHistory(Canvas c) {
-        double[] xPoints = new double[poseHistory.size()];
-        double[] yPoints = new double[poseHistory.size()];
-
-        int i = 0;
-        for (Pose2d t : poseHistory) {
-            xPoints[i] = t.position.x;
-            yPoints[i] = t.position.y;
-
-            i++;
-        }
+        poseHistory.exportPolyline(poseHistoryXPoints, poseHistoryYPoints);
 
         c.setStrokeWidth(1);
         c.setStroke("#3F51B5");
-        c.strokePolyline(xPoints, yPoints);
+        c.strokePolyline(poseHistoryXPoints, poseHistoryYPoints);
+    }
+
+    /**
+     * Creates a thread that runs this drive at a fixed rate; see DriveControlThread.
+     */
+    public DriveControlThread controlThread() {
+        return new DriveControlThread(
+                this::updatePoseEstimate,
+                localizer,
+                () -> setDrivePowers(new PoseVelocity2d(new Vector2d(0, 0), 0)),
+                PARAMS.controlPeriodMs,
+                PARAMS.controlHeartbeatTimeoutMs
+        );
     }
 
     public TrajectoryActionBuilder actionBuilder(Pose2d beginPose) {
-        return new TrajectoryActionBuilder(
+        return actionBuilder(beginPose, TurnAction::new, FollowTrajectoryAction::new);
+    }
+
+    /**
+     * Like actionBuilder(), but the built trajectories are cached on disk and reused by later
+     * inits as long as the builder calls, begin pose and drive constraints are unchanged.
+     */
+    public CachedActionBuilder cachedActionBuilder(Pose2d beginPose) {
+        return new CachedActionBuilder(
+                this::actionBuilder,
                 TurnAction::new,
                 FollowTrajectoryAction::new,
+                defaultTurnConstraints,
+                PARAMS.trajectoryResolution,
+                constraintKey,
+                beginPose
+        );
+    }
+
+    private TrajectoryActionBuilder actionBuilder(Pose2d beginPose,
+                                                 TurnActionFactory turnFactory,
+                                                 TrajectoryActionFactory trajectoryFactory) {
+        return new TrajectoryActionBuilder(
+                turnFactory,
+                trajectoryFactory,
                 new TrajectoryBuilderParams(
-                        1e-6,
+                        ARC_LENGTH_SAMPLING_EPS,
                         new ProfileParams(
-                                0.25, 0.1, 1e-2
+                                PROFILE_DISP_RESOLUTION, PROFILE_ANGULAR_RESOLUTION, PROFILE_ANGLE_SAMPLING_EPS
                         )
                 ),
-                beginPose, 0.0,
+                beginPose, BEGIN_END_VEL,
                 defaultTurnConstraints,
                 defaultVelConstraint, defaultAccelConstraint
         );
@@ -1,18 +1,16 @@
 package org.firstinspires.ftc.teamcode;
 
 import com.acmerobotics.dashboard.config.Config;
-import com.acmerobotics.roadrunner.DualNum;
 import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.PoseVelocity2d;
-import com.acmerobotics.roadrunner.Time;
-import com.acmerobotics.roadrunner.Twist2dDual;
 import com.acmerobotics.roadrunner.Vector2d;
-import com.acmerobotics.roadrunner.Vector2dDual;
+import com.acmerobotics.roadrunner.ftc.DownsampledWriter;
 import com.acmerobotics.roadrunner.ftc.Encoder;
 import com.acmerobotics.roadrunner.ftc.FlightRecorder;
 import com.acmerobotics.roadrunner.ftc.OverflowEncoder;
 import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
 import com.acmerobotics.roadrunner.ftc.RawEncoder;
+import com.qualcomm.hardware.lynx.LynxModule;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
@@ -24,8 +22,22 @@ public final class ThreeDeadWheelLocalizer implements Localizer {
         public double par0YTicks = 0.0; // y position of the first parallel encoder (in tick units)
         public double par1YTicks = 1.0; // y position of the second parallel encoder (in tick units)
         public double perpXTicks = 0.0; // x position of the perpendicular encoder (in tick units)
+
+        // integration thread parameters
+        // when set at construction, the encoders are sampled and integrated on a background thread
+        // once per integrationPeriodMs, and update() only collects the result; when a
+        // BulkReadManager owns the hubs (as in the stock drives), pass it to the constructor so the
+        // thread refreshes the cache through it
+        public boolean integrateOnThread = false;
+        public long integrationPeriodMs = 3;
+
+        // velocity estimation parameters
+        public int velocityWindow = 0; // samples in the least-squares velocity fit; 0 uses the hub's velocity
+        public int velocityFitOrder = 1; // 1 for a line, 2 for a parabola
     }
 
+    private static final long IDLE_TIMEOUT_NANOS = 500_000_000L;
+
     public static Params PARAMS = new Params();
 
     public final Encoder par0, par1, perp;
@@ -35,14 +47,46 @@ public final class ThreeDeadWheelLocalizer implements Localizer {
     private int lastPar0Pos, lastPar1Pos, lastPerpPos;
     private boolean initialized;
     private Pose2d pose;
+    private volatile PoseSnapshot snapshot;
+
+    private OdometryKernels.ThreeDeadWheel odometry;
+    private final OdometryKernels.Output odometryOutput = new OdometryKernels.Output();
+    private final OdometryKernels.PoseIntegrator integrator;
+
+    // the thread steps far faster than the OpMode loop; don't flood the log
+    private final DownsampledWriter threadInputsWriter = new DownsampledWriter("THREE_DEAD_WHEEL_INPUTS", 10_000_000);
+
+    // integration thread state; the encoders belong to the thread while it is enabled
+    private final boolean integrateOnThread;
+    private final LynxModule[] modules;
+    private final BulkReadManager bulkReads; // null if the hubs aren't in MANUAL mode
+    private final Object pendingLock = new Object();
+    // motion since the last collection, as a pose relative to the pose at that collection
+    private final OdometryKernels.PoseIntegrator pendingDelta = new OdometryKernels.PoseIntegrator(new Pose2d(0.0, 0.0, 0.0));
+    private double pendingVelX, pendingVelY, pendingVelHeading;
+    private volatile long lastCollectNanos;
+    private volatile long integrationSteps;
+    private volatile boolean running; // written under pendingLock
 
     public ThreeDeadWheelLocalizer(HardwareMap hardwareMap, double inPerTick, Pose2d initialPose) {
+        this(hardwareMap, inPerTick, initialPose, null);
+    }
+
+    /**
+     * @param bulkReads manager that owns the hubs, or null if none does; with integrateOnThread
+     *                  set, the thread refreshes the bulk cache through it
+     */
+    public ThreeDeadWheelLocalizer(HardwareMap hardwareMap, double inPerTick, Pose2d initialPose,
+                                   BulkReadManager bulkReads) {
         // TODO: make sure your config has **motors** with these names (or change them)
         //   the encoders should be plugged into the slot matching the named motor
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
-        par0 = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par0")));
-        par1 = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par1")));
-        perp = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "perp")));
+        par0 = VelocityEstimator.wrap(new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par0"))),
+                PARAMS.velocityWindow, PARAMS.velocityFitOrder);
+        par1 = VelocityEstimator.wrap(new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par1"))),
+                PARAMS.velocityWindow, PARAMS.velocityFitOrder);
+        perp = VelocityEstimator.wrap(new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "perp"))),
+                PARAMS.velocityWindow, PARAMS.velocityFitOrder);
 
         // TODO: reverse encoder directions if needed
         //   par0.setDirection(DcMotorSimple.Direction.REVERSE);
@@ -51,12 +95,36 @@ public final class ThreeDeadWheelLocalizer implements Localizer {
 
         FlightRecorder.write("THREE_DEAD_WHEEL_PARAMS", PARAMS);
 
+        integrateOnThread = PARAMS.integrateOnThread;
+        modules = hardwareMap.getAll(LynxModule.class).toArray(new LynxModule[0]);
+        this.bulkReads = bulkReads;
+        if (integrateOnThread && bulkReads == null) {
+            for (LynxModule module : modules) {
+                // the thread's bulk reads would race the manager's
+                if (module.getBulkCachingMode() == LynxModule.BulkCachingMode.MANUAL) {
+                    throw new IllegalStateException(
+                            "integrateOnThread with hubs in MANUAL mode needs the drive's BulkReadManager");
+                }
+            }
+        }
+
         pose = initialPose;
+        integrator = new OdometryKernels.PoseIntegrator(pose);
+        snapshot = PoseSnapshot.initial(pose);
     }
 
     @Override
     public void setPose(Pose2d pose) {
+        if (integrateOnThread) {
+            synchronized (pendingLock) {
+                // motion before now is already accounted for by the new pose
+                pendingDelta.set(0.0, 0.0, 0.0);
+            }
+        }
+
         this.pose = pose;
+        integrator.set(pose);
+        snapshot = snapshot.next(pose, snapshot.velocity);
     }
 
     @Override
@@ -64,13 +132,135 @@ public final class ThreeDeadWheelLocalizer implements Localizer {
         return pose;
     }
 
+    @Override
+    public PoseSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     @Override
     public PoseVelocity2d update() {
+        PoseVelocity2d vel;
+        if (integrateOnThread) {
+            vel = collect();
+        } else {
+            if (step()) {
+                integrator.integrate(odometryOutput.dx, odometryOutput.dy, odometryOutput.dheading);
+                pose = integrator.toPose();
+                vel = odometryOutput.velocity();
+            } else {
+                vel = new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0);
+            }
+        }
+
+        snapshot = snapshot.next(pose, vel);
+        return vel;
+    }
+
+    /**
+     * @return the number of integration steps taken by the background thread
+     */
+    public long getIntegrationSteps() {
+        return integrationSteps;
+    }
+
+    // applies the motion integrated on the thread since the last call
+    private PoseVelocity2d collect() {
+        lastCollectNanos = System.nanoTime();
+        ensureRunning();
+
+        double dx, dy, dheading, velX, velY, velHeading;
+        synchronized (pendingLock) {
+            dx = pendingDelta.x;
+            dy = pendingDelta.y;
+            dheading = pendingDelta.heading;
+            velX = pendingVelX;
+            velY = pendingVelY;
+            velHeading = pendingVelHeading;
+            pendingDelta.set(0.0, 0.0, 0.0);
+        }
+
+        integrator.compose(dx, dy, dheading);
+        pose = integrator.toPose();
+        return new PoseVelocity2d(new Vector2d(velX, velY), velHeading);
+    }
+
+    private void ensureRunning() {
+        synchronized (pendingLock) {
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+
+        Thread thread = new Thread(this::integrationLoop, "ThreeDeadWheelLocalizer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    private void integrationLoop() {
+        long periodNanos = PARAMS.integrationPeriodMs * 1_000_000L;
+        long nextStepNanos = System.nanoTime();
+        try {
+            while (true) {
+                synchronized (pendingLock) {
+                    // stop once the OpMode stops collecting so the thread can't outlive it
+                    if (System.nanoTime() - lastCollectNanos > IDLE_TIMEOUT_NANOS) {
+                        running = false;
+                        return;
+                    }
+                }
+
+                if (bulkReads != null) {
+                    bulkReads.refresh();
+                } else {
+                    for (LynxModule module : modules) {
+                        // clears the cache and refills it with a single bulk read
+                        module.getBulkData();
+                    }
+                }
+
+                if (step()) {
+                    synchronized (pendingLock) {
+                        pendingDelta.integrate(odometryOutput.dx, odometryOutput.dy, odometryOutput.dheading);
+                        pendingVelX = odometryOutput.velX;
+                        pendingVelY = odometryOutput.velY;
+                        pendingVelHeading = odometryOutput.velHeading;
+                    }
+                }
+
+                integrationSteps++;
+
+                nextStepNanos += periodNanos;
+                long sleepNanos = nextStepNanos - System.nanoTime();
+                if (sleepNanos > 0) {
+                    Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+                } else {
+                    // fell behind; don't try to catch up with back-to-back reads
+                    nextStepNanos = System.nanoTime();
+                }
+            }
+        } catch (InterruptedException e) {
+            // asked to stop
+        } finally {
+            synchronized (pendingLock) {
+                running = false;
+            }
+        }
+    }
+
+    // reads the encoders and writes the motion since the last step; returns false on the first step
+    private boolean step() {
         PositionVelocityPair par0PosVel = par0.getPositionAndVelocity();
         PositionVelocityPair par1PosVel = par1.getPositionAndVelocity();
         PositionVelocityPair perpPosVel = perp.getPositionAndVelocity();
 
-        FlightRecorder.write("THREE_DEAD_WHEEL_INPUTS", new ThreeDeadWheelInputsMessage(par0PosVel, par1PosVel, perpPosVel));
+        ThreeDeadWheelInputsMessage inputs = new ThreeDeadWheelInputsMessage(par0PosVel, par1PosVel, perpPosVel);
+        if (integrateOnThread) {
+            threadInputsWriter.write(inputs);
+        } else {
+            FlightRecorder.write("THREE_DEAD_WHEEL_INPUTS", inputs);
+        }
 
         if (!initialized) {
             initialized = true;
@@ -79,35 +269,24 @@ public final class ThreeDeadWheelLocalizer implements Localizer {
             lastPar1Pos = par1PosVel.position;
             lastPerpPos = perpPosVel.position;
 
-            return new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0);
+            return false;
         }
 
         int par0PosDelta = par0PosVel.position - lastPar0Pos;
         int par1PosDelta = par1PosVel.position - lastPar1Pos;
         int perpPosDelta = perpPosVel.position - lastPerpPos;
 
-        Twist2dDual<Time> twist = new Twist2dDual<>(
-                new Vector2dDual<>(
-                        new DualNum<Time>(new double[] {
-                                (PARAMS.par0YTicks * par1PosDelta - PARAMS.par1YTicks * par0PosDelta) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                                (PARAMS.par0YTicks * par1PosVel.velocity - PARAMS.par1YTicks * par0PosVel.velocity) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                        }).times(inPerTick),
-                        new DualNum<Time>(new double[] {
-                                (PARAMS.perpXTicks / (PARAMS.par0YTicks - PARAMS.par1YTicks) * (par1PosDelta - par0PosDelta) + perpPosDelta),
-                                (PARAMS.perpXTicks / (PARAMS.par0YTicks - PARAMS.par1YTicks) * (par1PosVel.velocity - par0PosVel.velocity) + perpPosVel.velocity),
-                        }).times(inPerTick)
-                ),
-                new DualNum<>(new double[] {
-                        (par0PosDelta - par1PosDelta) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                        (par0PosVel.velocity - par1PosVel.velocity) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                })
-        );
+        // rebuild the kernel if the parameters were changed from the dashboard
+        if (odometry == null || !odometry.matches(inPerTick, PARAMS.par0YTicks, PARAMS.par1YTicks, PARAMS.perpXTicks)) {
+            odometry = new OdometryKernels.ThreeDeadWheel(inPerTick, PARAMS.par0YTicks, PARAMS.par1YTicks, PARAMS.perpXTicks);
+        }
+        odometry.compute(par0PosDelta, par1PosDelta, perpPosDelta,
+                par0PosVel.velocity, par1PosVel.velocity, perpPosVel.velocity, odometryOutput);
 
         lastPar0Pos = par0PosVel.position;
         lastPar1Pos = par1PosVel.position;
         lastPerpPos = perpPosVel.position;
 
-        pose = pose.plus(twist.value());
-        return twist.velocity().value();
+        return true;
     }
 }
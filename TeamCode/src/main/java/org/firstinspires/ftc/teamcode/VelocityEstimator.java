@@ -0,0 +1,177 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.ftc.Encoder;
+import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
+import com.qualcomm.robotcore.hardware.DcMotorController;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+/**
+ * Estimates velocity and acceleration by fitting a polynomial to the last few timestamped
+ * positions with least squares. The fit uses the actual sample times, so uneven loop times don't
+ * bias it. Compared to the hub's velocity, a window of a few samples trades a little lag for much
+ * less quantization noise. Samples live in a primitive ring buffer and nothing allocates.
+ */
+public final class VelocityEstimator {
+    private final int order;
+    private final long[] timestamps;
+    private final double[] positions;
+    private int head; // index of the oldest entry
+    private int size;
+
+    private double velocity, acceleration;
+
+    /**
+     * @param window number of samples in the fit
+     * @param order 1 fits a line (velocity only), 2 fits a parabola (velocity and acceleration)
+     */
+    public VelocityEstimator(int window, int order) {
+        if (order != 1 && order != 2) {
+            throw new IllegalArgumentException("order must be 1 or 2");
+        }
+        if (window < order + 1) {
+            throw new IllegalArgumentException("window must have more samples than the order");
+        }
+
+        this.order = order;
+        timestamps = new long[window];
+        positions = new double[window];
+    }
+
+    /**
+     * Adds a sample and refits.
+     */
+    public void add(long timestampNanos, double position) {
+        int i;
+        if (size < timestamps.length) {
+            i = (head + size) % timestamps.length;
+            size++;
+        } else {
+            i = head;
+            head = (head + 1) % timestamps.length;
+        }
+
+        timestamps[i] = timestampNanos;
+        positions[i] = position;
+
+        fit(timestampNanos, position);
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        velocity = 0.0;
+        acceleration = 0.0;
+    }
+
+    /**
+     * @return velocity at the newest sample, in position units per second
+     */
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * @return acceleration at the newest sample, or 0 for a first-order fit
+     */
+    public double getAcceleration() {
+        return acceleration;
+    }
+
+    private void fit(long newestNanos, double newestPosition) {
+        double span = (newestNanos - timestamps[head]) / 1e9;
+        if (size < 2 || span <= 0) {
+            velocity = 0.0;
+            acceleration = 0.0;
+            return;
+        }
+
+        // fit in time scaled to [-1, 0] around the newest sample to keep the sums well conditioned
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double t0 = 0, t1 = 0, t2 = 0;
+        for (int j = 0; j < size; j++) {
+            int k = (head + j) % timestamps.length;
+            double tau = (timestamps[k] - newestNanos) / 1e9 / span;
+            double p = positions[k] - newestPosition;
+            double tau2 = tau * tau;
+
+            s0 += 1;
+            s1 += tau;
+            s2 += tau2;
+            s3 += tau2 * tau;
+            s4 += tau2 * tau2;
+            t0 += p;
+            t1 += tau * p;
+            t2 += tau2 * p;
+        }
+
+        if (order == 2 && size >= 3) {
+            double det = det3(s0, s1, s2, s1, s2, s3, s2, s3, s4);
+            if (Math.abs(det) > 1e-12) {
+                velocity = det3(s0, t0, s2, s1, t1, s3, s2, t2, s4) / det / span;
+                acceleration = 2 * det3(s0, s1, t0, s1, s2, t1, s2, s3, t2) / det / (span * span);
+                return;
+            }
+        }
+
+        double det = s0 * s2 - s1 * s1;
+        velocity = Math.abs(det) > 1e-12 ? (s0 * t1 - s1 * t0) / det / span : 0.0;
+        acceleration = 0.0;
+    }
+
+    // determinant of the row-major 3x3 matrix [a b c; d e f; g h i]
+    private static double det3(double a, double b, double c,
+                               double d, double e, double f,
+                               double g, double h, double i) {
+        return a * (e * i - f * h) - b * (d * i - f * g) + c * (d * h - e * g);
+    }
+
+    /**
+     * Returns an encoder that reports the fitted velocity in place of the hub's, or the encoder
+     * itself if window is 0.
+     */
+    public static Encoder wrap(Encoder encoder, int window, int order) {
+        if (window == 0) {
+            return encoder;
+        }
+        return new EstimatingEncoder(encoder, new VelocityEstimator(window, order));
+    }
+
+    /**
+     * Encoder whose velocity comes from a {@link VelocityEstimator} fed with each position read.
+     * Read it once per loop; every read adds a sample.
+     */
+    public static final class EstimatingEncoder implements Encoder {
+        private final Encoder encoder;
+        public final VelocityEstimator estimator;
+
+        EstimatingEncoder(Encoder encoder, VelocityEstimator estimator) {
+            this.encoder = encoder;
+            this.estimator = estimator;
+        }
+
+        @Override
+        public PositionVelocityPair getPositionAndVelocity() {
+            PositionVelocityPair p = encoder.getPositionAndVelocity();
+            estimator.add(System.nanoTime(), p.position);
+            return new PositionVelocityPair(p.position, (int) Math.round(estimator.getVelocity()),
+                    p.rawPosition, p.rawVelocity);
+        }
+
+        @Override
+        public DcMotorController getController() {
+            return encoder.getController();
+        }
+
+        @Override
+        public DcMotorSimple.Direction getDirection() {
+            return encoder.getDirection();
+        }
+
+        @Override
+        public void setDirection(DcMotorSimple.Direction direction) {
+            encoder.setDirection(direction);
+            // positions before and after a direction change don't belong in the same fit
+            estimator.clear();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+/**
+ * Samples a {@link VoltageSensor} on a background thread and low-pass filters the result, so the
+ * control loop can read the battery voltage without a hub transaction or the sensor noise.
+ * The thread starts on the first read and exits once nobody has read the voltage for a while,
+ * which keeps it from outliving the OpMode.
+ */
+public final class VoltageSampler {
+    private static final long IDLE_TIMEOUT_NANOS = 2_000_000_000L;
+
+    private final VoltageSensor sensor;
+    private final long periodNanos;
+    private final double timeConstant;
+
+    private volatile double voltage = Double.NaN;
+    private volatile double restingVoltage = Double.NaN;
+    private volatile long lastReadNanos;
+
+    private volatile boolean running; // written under this
+
+    /**
+     * @param periodMs time between samples
+     * @param timeConstant low-pass filter time constant in seconds
+     */
+    public VoltageSampler(VoltageSensor sensor, long periodMs, double timeConstant) {
+        this.sensor = sensor;
+        this.periodNanos = periodMs * 1_000_000L;
+        this.timeConstant = timeConstant;
+    }
+
+    /**
+     * Returns the filtered battery voltage. Never blocks once the first sample has been taken.
+     */
+    public double getVoltage() {
+        lastReadNanos = System.nanoTime();
+
+        double v = voltage;
+        if (Double.isNaN(v)) {
+            synchronized (this) {
+                if (Double.isNaN(voltage)) {
+                    restingVoltage = voltage = sensor.getVoltage();
+                }
+                v = voltage;
+            }
+        }
+
+        ensureRunning();
+
+        return v;
+    }
+
+    /**
+     * Returns how far the filtered voltage has dropped below the highest filtered voltage seen,
+     * i.e., the sag caused by the current load.
+     */
+    public double getSag() {
+        double sag = restingVoltage - voltage;
+        return Double.isNaN(sag) ? 0.0 : Math.max(0.0, sag);
+    }
+
+    private void ensureRunning() {
+        if (running) {
+            return;
+        }
+
+        synchronized (this) {
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+
+        Thread thread = new Thread(this::sampleLoop, "VoltageSampler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void sampleLoop() {
+        long lastSampleNanos = System.nanoTime();
+        long nextSampleNanos = lastSampleNanos + periodNanos;
+        try {
+            while (true) {
+                long sleepNanos = nextSampleNanos - System.nanoTime();
+                if (sleepNanos > 0) {
+                    Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+                }
+
+                synchronized (this) {
+                    if (System.nanoTime() - lastReadNanos > IDLE_TIMEOUT_NANOS) {
+                        running = false;
+                        return;
+                    }
+                }
+
+                double raw = sensor.getVoltage();
+                long now = System.nanoTime();
+                double dt = (now - lastSampleNanos) / 1e9;
+                lastSampleNanos = now;
+
+                double alpha = dt / (timeConstant + dt);
+                double filtered = voltage + alpha * (raw - voltage);
+                voltage = filtered;
+                if (filtered > restingVoltage) {
+                    restingVoltage = filtered;
+                }
+
+                nextSampleNanos += periodNanos;
+                if (nextSampleNanos < now) {
+                    nextSampleNanos = now + periodNanos;
+                }
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                running = false;
+            }
+        }
+    }
+}
@@ -21,4 +21,24 @@ public final class DriveCommandMessage {
         this.angularVelocity = poseVelocity.angVel.get(0);
         this.angularAcceleration = poseVelocity.angVel.get(1);
     }
+
+    public DriveCommandMessage(double forwardVelocity, double forwardAcceleration,
+                               double lateralVelocity, double lateralAcceleration,
+                               double angularVelocity, double angularAcceleration) {
+        set(forwardVelocity, forwardAcceleration, lateralVelocity, lateralAcceleration,
+                angularVelocity, angularAcceleration);
+    }
+
+    public DriveCommandMessage set(double forwardVelocity, double forwardAcceleration,
+                                   double lateralVelocity, double lateralAcceleration,
+                                   double angularVelocity, double angularAcceleration) {
+        this.timestamp = System.nanoTime();
+        this.forwardVelocity = forwardVelocity;
+        this.forwardAcceleration = forwardAcceleration;
+        this.lateralVelocity = lateralVelocity;
+        this.lateralAcceleration = lateralAcceleration;
+        this.angularVelocity = angularVelocity;
+        this.angularAcceleration = angularAcceleration;
+        return this;
+    }
 }
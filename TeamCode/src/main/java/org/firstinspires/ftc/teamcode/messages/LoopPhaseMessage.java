@@ -0,0 +1,20 @@
+package org.firstinspires.ftc.teamcode.messages;
+
+public final class LoopPhaseMessage {
+    public long timestamp;
+    public long count;
+    public double p50;
+    public double p95;
+    public double p99;
+    public double max;
+
+    public LoopPhaseMessage set(long count, double p50, double p95, double p99, double max) {
+        this.timestamp = System.nanoTime();
+        this.count = count;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.max = max;
+        return this;
+    }
+}
@@ -15,6 +15,9 @@ public final class MecanumLocalizerInputsMessage {
     public double pitch;
     public double roll;
 
+    public MecanumLocalizerInputsMessage() {
+    }
+
     public MecanumLocalizerInputsMessage(PositionVelocityPair leftFront, PositionVelocityPair leftBack, PositionVelocityPair rightBack, PositionVelocityPair rightFront, YawPitchRollAngles angles) {
         this.timestamp = System.nanoTime();
         this.leftFront = leftFront;
@@ -27,4 +30,16 @@ public final class MecanumLocalizerInputsMessage {
             this.roll = angles.getRoll(AngleUnit.RADIANS);
         }
     }
+
+    public MecanumLocalizerInputsMessage set(PositionVelocityPair leftFront, PositionVelocityPair leftBack, PositionVelocityPair rightBack, PositionVelocityPair rightFront, YawPitchRollAngles angles) {
+        this.timestamp = System.nanoTime();
+        this.leftFront = leftFront;
+        this.leftBack = leftBack;
+        this.rightBack = rightBack;
+        this.rightFront = rightFront;
+        this.yaw = angles.getYaw(AngleUnit.RADIANS);
+        this.pitch = angles.getPitch(AngleUnit.RADIANS);
+        this.roll = angles.getRoll(AngleUnit.RADIANS);
+        return this;
+    }
 }
@@ -14,5 +14,17 @@ public final class PoseMessage {
         this.y = pose.position.y;
         this.heading = pose.heading.toDouble();
     }
+
+    public PoseMessage set(double x, double y, double heading) {
+        this.timestamp = System.nanoTime();
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        return this;
+    }
+
+    public PoseMessage set(Pose2d pose) {
+        return set(pose.position.x, pose.position.y, pose.heading.toDouble());
+    }
 }
 
@@ -14,4 +14,22 @@ public final class TankLocalizerInputsMessage {
         this.left = left.toArray(new PositionVelocityPair[0]);
         this.right = right.toArray(new PositionVelocityPair[0]);
     }
+
+    public TankLocalizerInputsMessage(PositionVelocityPair[] left, PositionVelocityPair[] right) {
+        this.timestamp = System.nanoTime();
+        this.left = left.clone();
+        this.right = right.clone();
+    }
+
+    public TankLocalizerInputsMessage(int leftCount, int rightCount) {
+        this.left = new PositionVelocityPair[leftCount];
+        this.right = new PositionVelocityPair[rightCount];
+    }
+
+    public TankLocalizerInputsMessage set(PositionVelocityPair[] left, PositionVelocityPair[] right) {
+        this.timestamp = System.nanoTime();
+        System.arraycopy(left, 0, this.left, 0, this.left.length);
+        System.arraycopy(right, 0, this.right, 0, this.right.length);
+        return this;
+    }
 }
@@ -0,0 +1,294 @@
+package org.firstinspires.ftc.teamcode.tuning;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.telemetry.MultipleTelemetry;
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.MecanumKinematics;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.TankKinematics;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.Twist2dDual;
+import com.acmerobotics.roadrunner.Vector2dDual;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+
+import org.firstinspires.ftc.teamcode.LatencyHistogram;
+import org.firstinspires.ftc.teamcode.OdometryKernels;
+import org.firstinspires.ftc.teamcode.PoseEkf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times the allocation-free localization math and Pinpoint decoding on the Control Hub itself, where the loop budget
+ * actually matters. Nothing here touches hardware; the results stay on screen until stop.
+ */
+public final class LoopBenchmark extends LinearOpMode {
+    private static final int ITERATIONS = 100_000;
+
+    private static final int PINPOINT_BULK_READ_LENGTH = 40; // as read by GoBildaPinpointDriver
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        telemetry = new MultipleTelemetry(telemetry, FtcDashboard.getInstance().getTelemetry());
+
+        waitForStart();
+
+        telemetry.addLine("running...");
+        telemetry.update();
+
+        LatencyHistogram ekf = benchmarkEkf(ITERATIONS);
+        telemetry.addData("ekf p50/p99/max (us)", "%.1f / %.1f / %.1f",
+                ekf.percentileNanos(0.50) / 1e3, ekf.percentileNanos(0.99) / 1e3, ekf.getMaxNanos() / 1e3);
+        telemetry.update();
+
+        telemetry.addLine(benchmarkKernels(ITERATIONS));
+        telemetry.update();
+
+        telemetry.addLine(benchmarkPinpointParse(ITERATIONS));
+        telemetry.update();
+
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+
+    /**
+     * Times the filter on synthetic motion and measurements: one prediction and heading correction
+     * per iteration, plus a pose correction every fifth.
+     */
+    private static LatencyHistogram benchmarkEkf(int iterations) {
+        LatencyHistogram histogram = new LatencyHistogram(1_000, 5_000);
+        PoseEkf ekf = new PoseEkf(0.0, 0.0, 0.0, 1.0, 0.01);
+        Random random = new Random(0);
+
+        for (int i = 0; i < iterations; i++) {
+            double dx = 0.5 + 0.05 * random.nextGaussian();
+            double dy = 0.05 * random.nextGaussian();
+            double dheading = 0.01 + 0.001 * random.nextGaussian();
+
+            long start = System.nanoTime();
+            ekf.predict(dx, dy, dheading, 0.001, 0.0001);
+            ekf.correctHeading(ekf.getHeading() + 0.01 * random.nextGaussian(), 0.0001, 9.0);
+            if (i % 5 == 0) {
+                ekf.correctPose(ekf.getX() + random.nextGaussian(), ekf.getY() + random.nextGaussian(),
+                        ekf.getHeading(), 1.0, 0.01, 11.34);
+            }
+            histogram.record(System.nanoTime() - start);
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Times each kernel against the {@link DualNum}-based code it replaces on random wheel motion,
+     * including pose integration.
+     * @return one line per layout with the mean nanoseconds per update of each
+     */
+    private static String benchmarkKernels(int iterations) {
+        Random random = new Random(0);
+        double[] deltas = new double[4 * iterations];
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = 200 * random.nextGaussian();
+        }
+
+        double inPerTick = 0.002, trackWidth = 14.0, lateralMultiplier = 0.9;
+        OdometryKernels.Output out = new OdometryKernels.Output();
+
+        StringBuilder report = new StringBuilder();
+
+        // mecanum
+        {
+            MecanumKinematics kinematics = new MecanumKinematics(trackWidth, lateralMultiplier);
+            Pose2d pose = new Pose2d(0, 0, 0);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                int j = 4 * i;
+                Twist2dDual<Time> twist = kinematics.forward(new MecanumKinematics.WheelIncrements<>(
+                        new DualNum<Time>(new double[] {deltas[j], deltas[j]}).times(inPerTick),
+                        new DualNum<Time>(new double[] {deltas[j + 1], deltas[j + 1]}).times(inPerTick),
+                        new DualNum<Time>(new double[] {deltas[j + 2], deltas[j + 2]}).times(inPerTick),
+                        new DualNum<Time>(new double[] {deltas[j + 3], deltas[j + 3]}).times(inPerTick)));
+                pose = pose.plus(twist.value());
+            }
+            long dualNanos = System.nanoTime() - start;
+
+            OdometryKernels.Mecanum kernel = new OdometryKernels.Mecanum(inPerTick, trackWidth, lateralMultiplier);
+            OdometryKernels.PoseIntegrator integrator = new OdometryKernels.PoseIntegrator(new Pose2d(0, 0, 0));
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                int j = 4 * i;
+                kernel.compute(deltas[j], deltas[j + 1], deltas[j + 2], deltas[j + 3],
+                        deltas[j], deltas[j + 1], deltas[j + 2], deltas[j + 3], out);
+                integrator.integrate(out.dx, out.dy, out.dheading);
+            }
+            long kernelNanos = System.nanoTime() - start;
+
+            appendResult(report, "mecanum", dualNanos, kernelNanos, iterations,
+                    Math.hypot(pose.position.x - integrator.x, pose.position.y - integrator.y));
+        }
+
+        // tank
+        {
+            TankKinematics kinematics = new TankKinematics(trackWidth);
+            Pose2d pose = new Pose2d(0, 0, 0);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                int j = 4 * i;
+                Twist2dDual<Time> twist = kinematics.forward(new TankKinematics.WheelIncrements<>(
+                        new DualNum<Time>(new double[] {deltas[j], deltas[j]}).times(inPerTick),
+                        new DualNum<Time>(new double[] {deltas[j + 1], deltas[j + 1]}).times(inPerTick)));
+                pose = pose.plus(twist.value());
+            }
+            long dualNanos = System.nanoTime() - start;
+
+            OdometryKernels.Tank kernel = new OdometryKernels.Tank(inPerTick, trackWidth);
+            OdometryKernels.PoseIntegrator integrator = new OdometryKernels.PoseIntegrator(new Pose2d(0, 0, 0));
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                int j = 4 * i;
+                kernel.compute(deltas[j], deltas[j + 1], deltas[j], deltas[j + 1], out);
+                integrator.integrate(out.dx, out.dy, out.dheading);
+            }
+            long kernelNanos = System.nanoTime() - start;
+
+            appendResult(report, "tank", dualNanos, kernelNanos, iterations,
+                    Math.hypot(pose.position.x - integrator.x, pose.position.y - integrator.y));
+        }
+
+        // two dead wheels
+        {
+            double parYTicks = 3000, perpXTicks = -2000;
+            Pose2d pose = new Pose2d(0, 0, 0);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                int j = 4 * i;
+                double headingDelta = deltas[j + 2] * 1e-4;
+                Twist2dDual<Time> twist = new Twist2dDual<>(
+                        new Vector2dDual<>(
+                                new DualNum<Time>(new double[] {
+                                        deltas[j] - parYTicks * headingDelta,
+                                        deltas[j] - parYTicks * headingDelta,
+                                }).times(inPerTick),
+                                new DualNum<Time>(new double[] {
+                                        deltas[j + 1] - perpXTicks * headingDelta,
+                                        deltas[j + 1] - perpXTicks * headingDelta,
+                                }).times(inPerTick)),
+                        new DualNum<>(new double[] {headingDelta, headingDelta}));
+                pose = pose.plus(twist.value());
+            }
+            long dualNanos = System.nanoTime() - start;
+
+            OdometryKernels.TwoDeadWheel kernel = new OdometryKernels.TwoDeadWheel(inPerTick, parYTicks, perpXTicks);
+            OdometryKernels.PoseIntegrator integrator = new OdometryKernels.PoseIntegrator(new Pose2d(0, 0, 0));
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                int j = 4 * i;
+                double headingDelta = deltas[j + 2] * 1e-4;
+                kernel.compute(deltas[j], deltas[j + 1], headingDelta,
+                        deltas[j], deltas[j + 1], headingDelta, out);
+                integrator.integrate(out.dx, out.dy, out.dheading);
+            }
+            long kernelNanos = System.nanoTime() - start;
+
+            appendResult(report, "two dead wheel", dualNanos, kernelNanos, iterations,
+                    Math.hypot(pose.position.x - integrator.x, pose.position.y - integrator.y));
+        }
+
+        // three dead wheels
+        {
+            double par0YTicks = 3000, par1YTicks = -3000, perpXTicks = -2000;
+            Pose2d pose = new Pose2d(0, 0, 0);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                int j = 4 * i;
+                double par0 = deltas[j], par1 = deltas[j + 1], perp = deltas[j + 2];
+                Twist2dDual<Time> twist = new Twist2dDual<>(
+                        new Vector2dDual<>(
+                                new DualNum<Time>(new double[] {
+                                        (par0YTicks * par1 - par1YTicks * par0) / (par0YTicks - par1YTicks),
+                                        (par0YTicks * par1 - par1YTicks * par0) / (par0YTicks - par1YTicks),
+                                }).times(inPerTick),
+                                new DualNum<Time>(new double[] {
+                                        (perpXTicks / (par0YTicks - par1YTicks) * (par1 - par0) + perp),
+                                        (perpXTicks / (par0YTicks - par1YTicks) * (par1 - par0) + perp),
+                                }).times(inPerTick)),
+                        new DualNum<>(new double[] {
+                                (par0 - par1) / (par0YTicks - par1YTicks),
+                                (par0 - par1) / (par0YTicks - par1YTicks),
+                        }));
+                pose = pose.plus(twist.value());
+            }
+            long dualNanos = System.nanoTime() - start;
+
+            OdometryKernels.ThreeDeadWheel kernel = new OdometryKernels.ThreeDeadWheel(inPerTick, par0YTicks, par1YTicks, perpXTicks);
+            OdometryKernels.PoseIntegrator integrator = new OdometryKernels.PoseIntegrator(new Pose2d(0, 0, 0));
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                int j = 4 * i;
+                kernel.compute(deltas[j], deltas[j + 1], deltas[j + 2],
+                        deltas[j], deltas[j + 1], deltas[j + 2], out);
+                integrator.integrate(out.dx, out.dy, out.dheading);
+            }
+            long kernelNanos = System.nanoTime() - start;
+
+            appendResult(report, "three dead wheel", dualNanos, kernelNanos, iterations,
+                    Math.hypot(pose.position.x - integrator.x, pose.position.y - integrator.y));
+        }
+
+        return report.toString();
+    }
+
+    private static void appendResult(StringBuilder report, String name, long dualNanos, long kernelNanos,
+                                     int iterations, double positionDifference) {
+        report.append(String.format("%s: DualNum %.0f ns, kernel %.0f ns, final position difference %.2e in%n",
+                name, (double) dualNanos / iterations, (double) kernelNanos / iterations, positionDifference));
+    }
+
+    /**
+     * Times decoding a Pinpoint bulk read the way GoBildaPinpointDriver used to (a copy and a
+     * wrapped ByteBuffer per field) against its reusable view, on synthetic data.
+     * @param iterations number of parses to time for each decoder
+     * @return one line per decoder
+     */
+    private static String benchmarkPinpointParse(int iterations) {
+        byte[] bArr = new byte[PINPOINT_BULK_READ_LENGTH];
+        ByteBuffer fill = ByteBuffer.wrap(bArr).order(ByteOrder.LITTLE_ENDIAN);
+        fill.putInt(0, 1).putInt(4, 800).putInt(8, 12345).putInt(12, -6789);
+        for (int i = 16; i < PINPOINT_BULK_READ_LENGTH; i += 4) {
+            fill.putFloat(i, 100.5f * i);
+        }
+
+        double sink = 0;
+
+        long start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            sink += ByteBuffer.wrap(Arrays.copyOfRange(bArr, 0, 4)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            sink += ByteBuffer.wrap(Arrays.copyOfRange(bArr, 4, 8)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            sink += ByteBuffer.wrap(Arrays.copyOfRange(bArr, 8, 12)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            sink += ByteBuffer.wrap(Arrays.copyOfRange(bArr, 12, 16)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            for (int i = 16; i < PINPOINT_BULK_READ_LENGTH; i += 4) {
+                sink += ByteBuffer.wrap(Arrays.copyOfRange(bArr, i, i + 4)).order(ByteOrder.LITTLE_ENDIAN).getFloat();
+            }
+        }
+        long copyNanos = System.nanoTime() - start;
+
+        ByteBuffer view = ByteBuffer.allocate(PINPOINT_BULK_READ_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            System.arraycopy(bArr, 0, view.array(), 0, PINPOINT_BULK_READ_LENGTH);
+            sink += view.getInt(0);
+            sink += view.getInt(4);
+            sink += view.getInt(8);
+            sink += view.getInt(12);
+            for (int i = 16; i < PINPOINT_BULK_READ_LENGTH; i += 4) {
+                sink += view.getFloat(i);
+            }
+        }
+        long viewNanos = System.nanoTime() - start;
+
+        return String.format("copy + wrap: %.1f ns/parse%nreusable view: %.1f ns/parse%n(checksum %.0f)",
+                (double) copyNanos / iterations, (double) viewNanos / iterations, sink);
+    }
+}
@@ -0,0 +1,131 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.acmerobotics.roadrunner.AngularVelConstraint;
+import com.acmerobotics.roadrunner.MecanumKinematics;
+import com.acmerobotics.roadrunner.MinVelConstraint;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.ProfileAccelConstraint;
+import com.acmerobotics.roadrunner.ProfileParams;
+import com.acmerobotics.roadrunner.SleepAction;
+import com.acmerobotics.roadrunner.TimeTrajectory;
+import com.acmerobotics.roadrunner.TimeTurn;
+import com.acmerobotics.roadrunner.TrajectoryActionBuilder;
+import com.acmerobotics.roadrunner.TrajectoryBuilderParams;
+import com.acmerobotics.roadrunner.TurnConstraints;
+import com.acmerobotics.roadrunner.Vector2d;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Checks that a control tick of the drive actions (table lookup, controller and feedforward, pose
+ * history) allocates nothing once warmed up.
+ */
+public class FollowerAllocationTest {
+    private static final int WARMUP_TICKS = 20_000;
+    private static final int TICKS = 100_000;
+
+    private TimeTrajectory trajectory;
+    private TimeTurn turn;
+
+    private void build() {
+        MecanumKinematics kinematics = new MecanumKinematics(12.0);
+        new TrajectoryActionBuilder(
+                t -> {
+                    turn = t;
+                    return new SleepAction(0);
+                },
+                t -> {
+                    trajectory = t;
+                    return new SleepAction(0);
+                },
+                new TrajectoryBuilderParams(1e-6, new ProfileParams(0.25, 0.1, 1e-2)),
+                new Pose2d(0, 0, 0), 0.0,
+                new TurnConstraints(Math.PI, -Math.PI, Math.PI),
+                new MinVelConstraint(Arrays.asList(
+                        kinematics.new WheelVelConstraint(50),
+                        new AngularVelConstraint(Math.PI))),
+                new ProfileAccelConstraint(-30, 50))
+                .splineTo(new Vector2d(36, 24), Math.PI / 2)
+                .turn(Math.PI / 2)
+                .build();
+
+        assertNotNull(trajectory);
+        assertNotNull(turn);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    private static long bytesPerTick(Runnable tick) {
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            tick.run();
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < TICKS; i++) {
+            tick.run();
+        }
+        return (allocatedBytes() - before) / TICKS;
+    }
+
+    @Test
+    public void trajectoryTickDoesNotAllocate() {
+        build();
+        CompiledTrajectory compiled = new CompiledTrajectory(trajectory, 0.01);
+        MecanumFollower follower = new MecanumFollower(
+                new MecanumKinematics(12.0), new LoopProfiler(1_000_000_000), new SlipMonitor());
+        PoseHistory history = new PoseHistory(100);
+        Pose2d pose = new Pose2d(1, 2, 0.1);
+        PoseVelocity2d vel = new PoseVelocity2d(new Vector2d(3, 4), 0.5);
+
+        double[] t = {0.0};
+        long bytes = bytesPerTick(() -> {
+            t[0] = (t[0] + 0.01) % compiled.duration;
+            compiled.sample(t[0], follower.target);
+            follower.compute(pose, vel, 12.0);
+            history.add(System.nanoTime(), pose);
+        });
+        assertEquals(0, bytes);
+    }
+
+    @Test
+    public void turnTickDoesNotAllocate() {
+        build();
+        CompiledTurn compiled = new CompiledTurn(turn, 0.01);
+        MecanumFollower follower = new MecanumFollower(
+                new MecanumKinematics(12.0), new LoopProfiler(1_000_000_000), null);
+        Pose2d pose = new Pose2d(36, 24, 1.6);
+        PoseVelocity2d vel = new PoseVelocity2d(new Vector2d(0, 0), 1.0);
+
+        double[] t = {0.0};
+        long bytes = bytesPerTick(() -> {
+            t[0] = (t[0] + 0.01) % compiled.duration;
+            compiled.sample(t[0], follower.target);
+            follower.compute(pose, vel, 12.0);
+        });
+        assertEquals(0, bytes);
+    }
+
+    @Test
+    public void compiledTurnMatchesTurn() {
+        build();
+        CompiledTurn compiled = new CompiledTurn(turn, 0.01);
+        double[] row = new double[CompiledTrajectory.STRIDE];
+        for (double t = 0; t < turn.duration; t += 0.037) {
+            compiled.sample(t, row);
+            Pose2d expected = turn.get(t).value();
+            assertEquals(expected.position.x, row[CompiledTrajectory.X], 1e-9);
+            assertEquals(expected.position.y, row[CompiledTrajectory.Y], 1e-9);
+            assertEquals(0.0, Math.sin(expected.heading.toDouble() - row[CompiledTrajectory.HEADING]), 1e-3);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.acmerobotics.roadrunner.AngularVelConstraint;
+import com.acmerobotics.roadrunner.HolonomicController;
+import com.acmerobotics.roadrunner.MecanumKinematics;
+import com.acmerobotics.roadrunner.MinVelConstraint;
+import com.acmerobotics.roadrunner.MotorFeedforward;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.Pose2dDual;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.PoseVelocity2dDual;
+import com.acmerobotics.roadrunner.ProfileAccelConstraint;
+import com.acmerobotics.roadrunner.ProfileParams;
+import com.acmerobotics.roadrunner.SleepAction;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.TimeTrajectory;
+import com.acmerobotics.roadrunner.TrajectoryActionBuilder;
+import com.acmerobotics.roadrunner.TrajectoryBuilderParams;
+import com.acmerobotics.roadrunner.TurnConstraints;
+import com.acmerobotics.roadrunner.Vector2d;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Checks the follower's wheel powers against HolonomicController, MecanumKinematics.inverse() and
+ * MotorFeedforward, the chain it replaces, along a curved trajectory.
+ */
+public class MecanumFollowerTest {
+    private static final double VOLTAGE = 12.5;
+
+    @After
+    public void resetParams() {
+        MecanumDrive.PARAMS = new MecanumDrive.Params();
+    }
+
+    private static TimeTrajectory curve(MecanumKinematics kinematics) {
+        TimeTrajectory[] trajectory = new TimeTrajectory[1];
+        new TrajectoryActionBuilder(
+                t -> new SleepAction(0),
+                t -> {
+                    trajectory[0] = t;
+                    return new SleepAction(0);
+                },
+                new TrajectoryBuilderParams(1e-6, new ProfileParams(0.25, 0.1, 1e-2)),
+                new Pose2d(0, 0, 0), 0.0,
+                new TurnConstraints(Math.PI, -Math.PI, Math.PI),
+                new MinVelConstraint(Arrays.asList(
+                        kinematics.new WheelVelConstraint(50),
+                        new AngularVelConstraint(Math.PI))),
+                new ProfileAccelConstraint(-30, 50))
+                .splineToSplineHeading(new Pose2d(36, 24, Math.PI / 2), Math.PI / 2)
+                .build();
+
+        assertNotNull(trajectory[0]);
+        return trajectory[0];
+    }
+
+    @Test
+    public void wheelPowersMatchHolonomicController() {
+        MecanumDrive.Params params = MecanumDrive.PARAMS;
+        params.inPerTick = 0.002;
+        params.kS = 0.8;
+        params.kV = 0.0003;
+        params.kA = 0.00008;
+        params.axialGain = 4.0;
+        params.lateralGain = 3.0;
+        params.headingGain = 5.0;
+        params.axialVelGain = 0.5;
+        params.lateralVelGain = 0.4;
+        params.headingVelGain = 0.3;
+
+        MecanumKinematics kinematics = new MecanumKinematics(14.0, 1.2);
+        TimeTrajectory trajectory = curve(kinematics);
+        CompiledTrajectory compiled = new CompiledTrajectory(trajectory, 0.01);
+        MecanumFollower follower = new MecanumFollower(kinematics, new LoopProfiler(1_000_000_000), null);
+
+        HolonomicController controller = new HolonomicController(
+                params.axialGain, params.lateralGain, params.headingGain,
+                params.axialVelGain, params.lateralVelGain, params.headingVelGain);
+        MotorFeedforward feedforward = new MotorFeedforward(
+                params.kS, params.kV / params.inPerTick, params.kA / params.inPerTick);
+
+        // knots of the table, where sampling reproduces the trajectory exactly
+        for (int i = 0; i < compiled.getSampleCount(); i += 7) {
+            double t = Math.min(i * compiled.resolution, compiled.duration);
+            Pose2dDual<Time> txWorldTarget = trajectory.get(t);
+
+            // a robot slightly off the target, so the feedback terms count too
+            Pose2d target = txWorldTarget.value();
+            Pose2d pose = new Pose2d(
+                    target.position.x + 0.3, target.position.y - 0.2, target.heading.toDouble() + 0.05);
+            PoseVelocity2d vel = new PoseVelocity2d(new Vector2d(10, -2), 0.4);
+
+            PoseVelocity2dDual<Time> command = controller.compute(txWorldTarget, pose, vel);
+            MecanumKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
+
+            compiled.sample(t, follower.target);
+            follower.compute(pose, vel, VOLTAGE);
+
+            String at = "t = " + t;
+            assertEquals(at, feedforward.compute(wheelVels.leftFront) / VOLTAGE, follower.leftFrontPower, 1e-6);
+            assertEquals(at, feedforward.compute(wheelVels.leftBack) / VOLTAGE, follower.leftBackPower, 1e-6);
+            assertEquals(at, feedforward.compute(wheelVels.rightBack) / VOLTAGE, follower.rightBackPower, 1e-6);
+            assertEquals(at, feedforward.compute(wheelVels.rightFront) / VOLTAGE, follower.rightFrontPower, 1e-6);
+        }
+    }
+}
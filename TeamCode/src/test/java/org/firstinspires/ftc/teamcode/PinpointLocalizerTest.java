@@ -0,0 +1,123 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.acmerobotics.roadrunner.Pose2d;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Runs {@link PinpointLocalizer} against a {@link SimulatedPinpoint}: the init skips what the device
+ * already holds, resets when it doesn't, and tracks the robot only when the configuration matches
+ * the pods.
+ */
+public class PinpointLocalizerTest {
+    private static final double TICKS_PER_MM = 19.89436789; // 4-bar pod
+    private static final double X_POD_OFFSET_MM = -84.0;
+    private static final double Y_POD_OFFSET_MM = -168.0;
+    private static final double IN_PER_TICK = 1 / (25.4 * TICKS_PER_MM);
+
+    private static final long LATENCY_US = 100;
+    private static final long NANOS_PER_BYTE = 25_000L;
+    private static final long CALIBRATION_MS = 300;
+
+    @After
+    public void resetParams() {
+        PinpointLocalizer.PARAMS = new PinpointLocalizer.Params();
+    }
+
+    private static SimulatedPinpoint simWithPods() {
+        SimulatedPinpoint sim = new SimulatedPinpoint(LATENCY_US, NANOS_PER_BYTE);
+        sim.setPods(TICKS_PER_MM, X_POD_OFFSET_MM, Y_POD_OFFSET_MM);
+        return sim;
+    }
+
+    private static void configureForPods() {
+        PinpointLocalizer.PARAMS.parYTicks = X_POD_OFFSET_MM * TICKS_PER_MM;
+        PinpointLocalizer.PARAMS.perpXTicks = Y_POD_OFFSET_MM * TICKS_PER_MM;
+    }
+
+    // drives a curve, then stops so the comparison doesn't depend on read latency
+    private static void drive(SimulatedPinpoint sim, PinpointLocalizer localizer, long durationMs) {
+        sim.setTargetVelocity(600.0, 200.0, 1.5);
+        long end = System.nanoTime() + durationMs * 1_000_000L;
+        while (System.nanoTime() < end) {
+            localizer.update();
+        }
+
+        sim.setTargetVelocity(0.0, 0.0, 0.0);
+        end = System.nanoTime() + 500_000_000L;
+        while (System.nanoTime() < end) {
+            localizer.update();
+        }
+    }
+
+    private static double positionError(SimulatedPinpoint sim, PinpointLocalizer localizer) {
+        Pose2d truth = sim.getTruePose();
+        Pose2d estimate = localizer.getPose();
+        return Math.hypot(truth.position.x - estimate.position.x, truth.position.y - estimate.position.y);
+    }
+
+    @Test
+    public void changedConfigIsWrittenAndResets() {
+        configureForPods();
+        SimulatedPinpoint sim = simWithPods();
+        PinpointLocalizer localizer = new PinpointLocalizer(sim.createDriver(), IN_PER_TICK, new Pose2d(0, 0, 0));
+
+        assertEquals(3, localizer.configResult.registersWritten);
+        assertTrue(localizer.resetOnInit);
+        assertFalse(localizer.configResult.resetSkipped);
+        // the readback buys nothing when every register has to be written anyway
+        assertTrue(localizer.configResult.savedMs <= 0);
+    }
+
+    @Test
+    public void matchingConfigSkipsWritesAndReset() throws InterruptedException {
+        configureForPods();
+        SimulatedPinpoint sim = simWithPods();
+        PinpointLocalizer first = new PinpointLocalizer(sim.createDriver(), IN_PER_TICK, new Pose2d(0, 0, 0));
+        Thread.sleep(CALIBRATION_MS);
+        drive(sim, first, 500);
+
+        // a second OpMode on the same powered device keeps its pose
+        Pose2d pose = first.getPose();
+        PinpointLocalizer second = new PinpointLocalizer(sim.createDriver(), IN_PER_TICK, pose);
+
+        assertEquals(0, second.configResult.registersWritten);
+        assertFalse(second.resetOnInit);
+        assertTrue(second.configResult.resetSkipped);
+        assertTrue(second.configResult.savedMs > 200);
+
+        drive(sim, second, 500);
+        assertEquals(0.0, positionError(sim, second), 0.1);
+    }
+
+    @Test
+    public void matchingConfigTracksTheRobot() throws InterruptedException {
+        configureForPods();
+        SimulatedPinpoint sim = simWithPods();
+        PinpointLocalizer localizer = new PinpointLocalizer(sim.createDriver(), IN_PER_TICK, new Pose2d(0, 0, 0));
+        Thread.sleep(CALIBRATION_MS);
+
+        drive(sim, localizer, 1500);
+
+        Pose2d truth = sim.getTruePose();
+        assertEquals(0.0, positionError(sim, localizer), 0.1);
+        assertEquals(0.0, truth.heading.minus(localizer.getPose().heading), 1e-3);
+    }
+
+    @Test
+    public void wrongPodOffsetsShowAsPoseError() throws InterruptedException {
+        // offsets left at zero while the pods sit off center
+        SimulatedPinpoint sim = simWithPods();
+        PinpointLocalizer localizer = new PinpointLocalizer(sim.createDriver(), IN_PER_TICK, new Pose2d(0, 0, 0));
+        Thread.sleep(CALIBRATION_MS);
+
+        drive(sim, localizer, 1500);
+
+        assertTrue(positionError(sim, localizer) > 1.0);
+    }
+}
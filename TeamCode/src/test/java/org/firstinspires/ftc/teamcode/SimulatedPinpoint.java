@@ -0,0 +1,496 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.qualcomm.robotcore.hardware.I2cAddr;
+import com.qualcomm.robotcore.hardware.I2cDeviceSynchSimple;
+import com.qualcomm.robotcore.hardware.I2cWaitControl;
+import com.qualcomm.robotcore.hardware.TimestampedData;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Software stand-in for the I2C client of a goBILDA Pinpoint. It implements the register map that
+ * {@link GoBildaPinpointDriver} uses (bulk read, individual fields, pod offsets, encoder resolution,
+ * yaw scalar and device control) on top of a simulated robot. The robot accelerates toward a
+ * commanded velocity and turns the pods mounted on it; like the real device, the reported pose is
+ * integrated from the pod counts using the resolution and offsets in its registers, so a wrong
+ * configuration shows up as pose error. Every transaction blocks for a configurable latency, and
+ * the state is sampled halfway through it. Time comes from System.nanoTime(), so the driver and
+ * localizer run against it in real time.
+ */
+final class SimulatedPinpoint implements I2cDeviceSynchSimple {
+    // register map, see GoBildaPinpointDriver.Register
+    private static final int DEVICE_ID = 1;
+    private static final int DEVICE_VERSION = 2;
+    private static final int DEVICE_STATUS = 3;
+    private static final int DEVICE_CONTROL = 4;
+    private static final int LOOP_TIME = 5;
+    private static final int X_ENCODER_VALUE = 6;
+    private static final int Y_ENCODER_VALUE = 7;
+    private static final int X_POSITION = 8;
+    private static final int Y_POSITION = 9;
+    private static final int H_ORIENTATION = 10;
+    private static final int X_VELOCITY = 11;
+    private static final int Y_VELOCITY = 12;
+    private static final int H_VELOCITY = 13;
+    private static final int MM_PER_TICK = 14;
+    private static final int X_POD_OFFSET = 15;
+    private static final int Y_POD_OFFSET = 16;
+    private static final int YAW_SCALAR = 17;
+    private static final int BULK_READ = 18;
+
+    // status bits, see GoBildaPinpointDriver.DeviceStatus
+    private static final int STATUS_READY = 1;
+    private static final int STATUS_CALIBRATING = 1 << 1;
+
+    private static final long CALIBRATION_NANOS = 250_000_000L;
+    private static final int LOOP_TIME_US = 800;
+
+    private final long latencyNanos;
+    private final long nanosPerByte;
+
+    private I2cAddr address = I2cAddr.create7bit(GoBildaPinpointDriver.DEFAULT_ADDRESS);
+    private String userConfiguredName = "pinpoint";
+    private boolean logging;
+    private String loggingTag = "SimulatedPinpoint";
+
+    // configuration registers
+    private float ticksPerMm = 13.26291192f;
+    private float xPodOffset, yPodOffset; // mm
+    private float yawScalar = 1.0f;
+    private boolean xReversed, yReversed;
+
+    // pods actually mounted on the robot
+    private double podTicksPerMm = 13.26291192;
+    private double podXOffset, podYOffset; // mm, same conventions as the registers
+
+    // true robot state; velocities are in the robot frame
+    private long lastStepNanos;
+    private double x, y, heading; // mm, rad
+    private double velX, velY, angVel; // mm/s, rad/s
+    private double targetVelX, targetVelY, targetAngVel;
+    private double maxAccel = 2500.0; // mm/s^2
+    private double maxAngAccel = 4 * Math.PI; // rad/s^2
+
+    // what the device reports; position writes move this frame, not the true robot
+    private double reportedX, reportedY, reportedHeading;
+    private double reportedVelX, reportedVelY; // mm/s, robot frame
+    private double xEncoder, yEncoder; // ticks, before direction
+    private long xCounted, yCounted; // whole ticks the device has integrated so far
+    private long calibrationEndNanos;
+
+    private long transactions;
+
+    /**
+     * @param latencyUs fixed cost of each transaction
+     * @param nanosPerByte additional cost per byte transferred; 400 kHz I2C is roughly 25 us per byte
+     */
+    public SimulatedPinpoint(long latencyUs, long nanosPerByte) {
+        this.latencyNanos = latencyUs * 1_000L;
+        this.nanosPerByte = nanosPerByte;
+        lastStepNanos = System.nanoTime();
+    }
+
+    /**
+     * Mounts pods with the given resolution and offsets on the robot. The registers keep their
+     * values; configuring the device with anything else makes its pose drift from the truth.
+     * @param xOffsetMm sideways offset of the X pod, left positive
+     * @param yOffsetMm forward offset of the Y pod, forward positive
+     */
+    public synchronized void setPods(double ticksPerMm, double xOffsetMm, double yOffsetMm) {
+        step(System.nanoTime());
+        podTicksPerMm = ticksPerMm;
+        podXOffset = xOffsetMm;
+        podYOffset = yOffsetMm;
+    }
+
+    /**
+     * Creates a driver on this simulated device.
+     */
+    public GoBildaPinpointDriver createDriver() {
+        return new GoBildaPinpointDriver(this, true);
+    }
+
+    /**
+     * Sets the robot-frame velocity the simulated robot accelerates toward.
+     */
+    public synchronized void setTargetVelocity(double velXMmPerSec, double velYMmPerSec, double angVel) {
+        step(System.nanoTime());
+        targetVelX = velXMmPerSec;
+        targetVelY = velYMmPerSec;
+        targetAngVel = angVel;
+    }
+
+    public synchronized void setAccelerationLimits(double maxAccelMmPerSec2, double maxAngAccel) {
+        step(System.nanoTime());
+        this.maxAccel = maxAccelMmPerSec2;
+        this.maxAngAccel = maxAngAccel;
+    }
+
+    /**
+     * @return the true pose of the robot since the simulation started, in inches
+     */
+    public synchronized Pose2d getTruePose() {
+        step(System.nanoTime());
+        return new Pose2d(x / 25.4, y / 25.4, heading);
+    }
+
+    public synchronized long getTransactions() {
+        return transactions;
+    }
+
+    private void step(long now) {
+        double dt = (now - lastStepNanos) / 1e9;
+        lastStepNanos = now;
+        if (dt <= 0) {
+            return;
+        }
+
+        double maxDv = maxAccel * dt;
+        velX += clamp(targetVelX - velX, maxDv);
+        velY += clamp(targetVelY - velY, maxDv);
+        angVel += clamp(targetAngVel - angVel, maxAngAccel * dt);
+
+        // pods see the velocity of the point they're mounted at
+        double xPodVel = velX - angVel * podXOffset, yPodVel = velY + angVel * podYOffset;
+        xEncoder += xPodVel * dt * podTicksPerMm;
+        yEncoder += yPodVel * dt * podTicksPerMm;
+
+        double dHeading = angVel * dt;
+        double[] travel = arc(velX * dt, velY * dt, dHeading);
+        double cos = Math.cos(heading), sin = Math.sin(heading);
+        x += cos * travel[0] - sin * travel[1];
+        y += sin * travel[0] + cos * travel[1];
+        heading += dHeading;
+
+        // the device's odometry: whole pod ticks through its registers, heading from its IMU
+        long xTicks = Math.round(xEncoder), yTicks = Math.round(yEncoder);
+        double xPodMm = (xReversed ? xCounted - xTicks : xTicks - xCounted) / ticksPerMm;
+        double yPodMm = (yReversed ? yCounted - yTicks : yTicks - yCounted) / ticksPerMm;
+        xCounted = xTicks;
+        yCounted = yTicks;
+
+        double imuDHeading = dHeading * yawScalar;
+        double forward = xPodMm + imuDHeading * xPodOffset;
+        double strafe = yPodMm - imuDHeading * yPodOffset;
+        travel = arc(forward, strafe, imuDHeading);
+        double reportedCos = Math.cos(reportedHeading), reportedSin = Math.sin(reportedHeading);
+        reportedX += reportedCos * travel[0] - reportedSin * travel[1];
+        reportedY += reportedSin * travel[0] + reportedCos * travel[1];
+        reportedHeading += imuDHeading;
+
+        // velocity from the pod rates rather than the tick deltas, like the device's filtered value
+        double imuAngVel = angVel * yawScalar;
+        double sign = xReversed ? -1 : 1;
+        reportedVelX = sign * xPodVel * podTicksPerMm / ticksPerMm + imuAngVel * xPodOffset;
+        sign = yReversed ? -1 : 1;
+        reportedVelY = sign * yPodVel * podTicksPerMm / ticksPerMm - imuAngVel * yPodOffset;
+    }
+
+    // robot-frame travel of a constant-curvature step with the given straight-line components
+    private static double[] arc(double dx, double dy, double dHeading) {
+        double a, b;
+        if (Math.abs(dHeading) < 1e-9) {
+            a = 1 - dHeading * dHeading / 6;
+            b = dHeading / 2;
+        } else {
+            a = Math.sin(dHeading) / dHeading;
+            b = (1 - Math.cos(dHeading)) / dHeading;
+        }
+        return new double[] {a * dx - b * dy, b * dx + a * dy};
+    }
+
+    private static double clamp(double value, double limit) {
+        return Math.max(-limit, Math.min(limit, value));
+    }
+
+    private int status(long now) {
+        return now < calibrationEndNanos ? STATUS_CALIBRATING : STATUS_READY;
+    }
+
+    // waits out half the transaction time on each side of sampling the state, like a real read
+    private void waitHalf(int bytes) {
+        long deadline = System.nanoTime() + (latencyNanos + bytes * nanosPerByte) / 2;
+        while (System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+    }
+
+    private synchronized byte[] readRegister(int ireg, int creg) {
+        transactions++;
+        long now = System.nanoTime();
+        step(now);
+
+        ByteBuffer b = ByteBuffer.allocate(Math.max(creg, 4)).order(ByteOrder.LITTLE_ENDIAN);
+        double cos = Math.cos(reportedHeading), sin = Math.sin(reportedHeading);
+        float worldVelX = (float) (cos * reportedVelX - sin * reportedVelY);
+        float worldVelY = (float) (sin * reportedVelX + cos * reportedVelY);
+        int xTicks = (int) Math.round(xReversed ? -xEncoder : xEncoder);
+        int yTicks = (int) Math.round(yReversed ? -yEncoder : yEncoder);
+
+        switch (ireg) {
+            case DEVICE_ID: b.putInt(0, 1); break;
+            case DEVICE_VERSION: b.putInt(0, 2); break;
+            case DEVICE_STATUS: b.putInt(0, status(now)); break;
+            case LOOP_TIME: b.putInt(0, LOOP_TIME_US); break;
+            case X_ENCODER_VALUE: b.putInt(0, xTicks); break;
+            case Y_ENCODER_VALUE: b.putInt(0, yTicks); break;
+            case X_POSITION: b.putFloat(0, (float) reportedX); break;
+            case Y_POSITION: b.putFloat(0, (float) reportedY); break;
+            case H_ORIENTATION: b.putFloat(0, (float) wrap(reportedHeading)); break;
+            case X_VELOCITY: b.putFloat(0, worldVelX); break;
+            case Y_VELOCITY: b.putFloat(0, worldVelY); break;
+            case H_VELOCITY: b.putFloat(0, (float) (angVel * yawScalar)); break;
+            case MM_PER_TICK: b.putFloat(0, ticksPerMm); break;
+            case X_POD_OFFSET: b.putFloat(0, xPodOffset); break;
+            case Y_POD_OFFSET: b.putFloat(0, yPodOffset); break;
+            case YAW_SCALAR: b.putFloat(0, yawScalar); break;
+            case BULK_READ:
+                if (b.capacity() >= 40) {
+                    b.putInt(0, status(now)).putInt(4, LOOP_TIME_US).putInt(8, xTicks).putInt(12, yTicks)
+                            .putFloat(16, (float) reportedX).putFloat(20, (float) reportedY)
+                            .putFloat(24, (float) wrap(reportedHeading))
+                            .putFloat(28, worldVelX).putFloat(32, worldVelY)
+                            .putFloat(36, (float) (angVel * yawScalar));
+                }
+                break;
+            default:
+                break;
+        }
+
+        byte[] data = new byte[creg];
+        System.arraycopy(b.array(), 0, data, 0, creg);
+        return data;
+    }
+
+    private synchronized void writeRegister(int ireg, byte[] data) {
+        transactions++;
+        long now = System.nanoTime();
+        step(now);
+
+        if (data.length < 4) {
+            return;
+        }
+        ByteBuffer b = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        switch (ireg) {
+            case DEVICE_CONTROL:
+                int control = b.getInt(0);
+                if ((control & 1) != 0) {
+                    calibrationEndNanos = now + CALIBRATION_NANOS;
+                }
+                if ((control & (1 << 1)) != 0) {
+                    reportedX = 0;
+                    reportedY = 0;
+                    reportedHeading = 0;
+                    calibrationEndNanos = now + CALIBRATION_NANOS;
+                }
+                if ((control & (1 << 2)) != 0) {
+                    yReversed = true;
+                }
+                if ((control & (1 << 3)) != 0) {
+                    yReversed = false;
+                }
+                if ((control & (1 << 4)) != 0) {
+                    xReversed = true;
+                }
+                if ((control & (1 << 5)) != 0) {
+                    xReversed = false;
+                }
+                break;
+            case X_POSITION: reportedX = b.getFloat(0); break;
+            case Y_POSITION: reportedY = b.getFloat(0); break;
+            case H_ORIENTATION: reportedHeading = b.getFloat(0); break;
+            case MM_PER_TICK: ticksPerMm = b.getFloat(0); break;
+            case X_POD_OFFSET: xPodOffset = b.getFloat(0); break;
+            case Y_POD_OFFSET: yPodOffset = b.getFloat(0); break;
+            case YAW_SCALAR: yawScalar = b.getFloat(0); break;
+            default:
+                break;
+        }
+    }
+
+    private static double wrap(double angle) {
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+
+    @Override
+    public byte[] read(int ireg, int creg) {
+        waitHalf(creg);
+        byte[] data = readRegister(ireg, creg);
+        waitHalf(creg);
+        return data;
+    }
+
+    @Override
+    public TimestampedData readTimeStamped(int ireg, int creg) {
+        waitHalf(creg);
+        TimestampedData result = new TimestampedData();
+        result.nanoTime = System.nanoTime();
+        result.data = readRegister(ireg, creg);
+        waitHalf(creg);
+        return result;
+    }
+
+    @Override
+    public void write(int ireg, byte[] data) {
+        waitHalf(data.length);
+        writeRegister(ireg, data);
+        waitHalf(data.length);
+    }
+
+    @Override
+    public void write(int ireg, byte[] data, I2cWaitControl waitControl) {
+        write(ireg, data);
+    }
+
+    @Override
+    public byte read8(int ireg) {
+        return read(ireg, 1)[0];
+    }
+
+    @Override
+    public void write8(int ireg, int bVal) {
+        write(ireg, new byte[] {(byte) bVal});
+    }
+
+    @Override
+    public void write8(int ireg, int bVal, I2cWaitControl waitControl) {
+        write8(ireg, bVal);
+    }
+
+    // the interface's register-less transactions aren't part of the Pinpoint's protocol; the
+    // driver never uses them, so they go to register 0 like on a device that ignores the address
+    @Override
+    public byte read8() {
+        return read8(0);
+    }
+
+    @Override
+    public byte[] read(int creg) {
+        return read(0, creg);
+    }
+
+    @Override
+    public TimestampedData readTimeStamped(int creg) {
+        return readTimeStamped(0, creg);
+    }
+
+    @Override
+    public void write8(int bVal) {
+        write8(0, bVal);
+    }
+
+    @Override
+    public void write8(int bVal, I2cWaitControl waitControl) {
+        write8(0, bVal);
+    }
+
+    @Override
+    public void write(byte[] data) {
+        write(0, data);
+    }
+
+    @Override
+    public void write(byte[] data, I2cWaitControl waitControl) {
+        write(0, data);
+    }
+
+    @Override
+    public void waitForWriteCompletions(I2cWaitControl waitControl) {
+    }
+
+    @Override
+    public void enableWriteCoalescing(boolean enable) {
+    }
+
+    @Override
+    public boolean isWriteCoalescingEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isArmed() {
+        return true;
+    }
+
+    @Override
+    @Deprecated
+    public void setI2cAddr(I2cAddr i2cAddr) {
+        address = i2cAddr;
+    }
+
+    @Override
+    @Deprecated
+    public I2cAddr getI2cAddr() {
+        return address;
+    }
+
+    @Override
+    public void setI2cAddress(I2cAddr newAddress) {
+        address = newAddress;
+    }
+
+    @Override
+    public I2cAddr getI2cAddress() {
+        return address;
+    }
+
+    @Override
+    public void setLogging(boolean enabled) {
+        logging = enabled;
+    }
+
+    @Override
+    public boolean getLogging() {
+        return logging;
+    }
+
+    @Override
+    public void setLoggingTag(String loggingTag) {
+        this.loggingTag = loggingTag;
+    }
+
+    @Override
+    public String getLoggingTag() {
+        return loggingTag;
+    }
+
+    @Override
+    public void setUserConfiguredName(String name) {
+        userConfiguredName = name;
+    }
+
+    @Override
+    public String getUserConfiguredName() {
+        return userConfiguredName;
+    }
+
+    @Override
+    public Manufacturer getManufacturer() {
+        return Manufacturer.Other;
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "Simulated goBILDA Pinpoint";
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return "simulated; " + address;
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+    }
+
+    @Override
+    public void close() {
+    }
+}